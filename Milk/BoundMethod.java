@@ -0,0 +1,36 @@
+package JavaInterpreter.Milk;
+
+/***
+ * A method that was read off an instance, like "var f = object.method;".
+ * Calling it calls the method with the instance as "this".
+ * Only made when the method is used as a value, obj.method() calls the method directly.
+ */
+class BoundMethod implements MilkCallable
+{
+	final MilkInstance receiver;
+	final MilkFunction method;
+
+	BoundMethod(MilkInstance receiver, MilkFunction method)
+	{
+		this.receiver = receiver;
+		this.method = method;
+	}
+
+	@Override
+	public Object call(Interpreter interpreter, Object[] arguments)
+	{
+		return method.callMethod(interpreter, receiver, arguments);
+	}
+
+	@Override
+	public int arity()
+	{
+		return method.arity();
+	}
+
+	@Override
+	public String toString()
+	{
+		return method.toString();
+	}
+}
@@ -0,0 +1,15 @@
+package JavaInterpreter.Milk;
+
+/***
+ * A mutable box holding one variable's value.
+ * Whoever holds the cell can read and write the variable without looking it up again.
+ */
+class Cell
+{
+	Object value;
+
+	Cell(Object value)
+	{
+		this.value = value;
+	}
+}
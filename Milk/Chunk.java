@@ -0,0 +1,66 @@
+package JavaInterpreter.Milk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+/***
+ * A chunk of bytecode: the compiled body of one function (or of the whole script).
+ *
+ * Holds the instructions, the line each byte of code came from (so runtime errors can
+ * point at the same line as the tree-walker does) and the table of constants the code uses.
+ */
+class Chunk
+{
+	byte[] code = new byte[16];
+	int[] lines = new int[16];
+	int count = 0;
+
+	final List<Object> constants = new ArrayList<>();
+	//Numbers and strings only need to be in the table once.
+	private final Map<Object, Integer> constantIndexes = new HashMap<>();
+
+	/***
+	 * Appends a byte of code, growing the arrays when they're full.
+	 */
+	void write(int b, int line)
+	{
+		if(count == code.length)
+		{
+			code = Arrays.copyOf(code, count * 2);
+			lines = Arrays.copyOf(lines, count * 2);
+		}
+		code[count] = (byte) b;
+		lines[count] = line;
+		count++;
+	}
+
+	/***
+	 * Adds a value to the constant table.
+	 * @return the index of the constant.
+	 */
+	int addConstant(Object value)
+	{
+		boolean shareable = value instanceof String || Numbers.isNumber(value);
+		if(shareable)
+		{
+			Integer index = constantIndexes.get(value);
+			if(index != null)
+				return index;
+		}
+
+		constants.add(value);
+		if(shareable)
+			constantIndexes.put(value, constants.size() - 1);
+		return constants.size() - 1;
+	}
+
+	/***
+	 * Reads the 16 bit operand starting at offset.
+	 */
+	int readShort(int offset)
+	{
+		return ((code[offset] & 0xff) << 8) | (code[offset + 1] & 0xff);
+	}
+}
@@ -0,0 +1,307 @@
+package JavaInterpreter.Milk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+/***
+ * Just enough of a JVM class file writer for the Jit.
+ *
+ * Writes version 49 class files. Those are checked by the JVM's type-inferring verifier,
+ * so there's no need to compute stack map frames, only the maximum stack size and locals.
+ * Supports one class with methods, no fields, no exception tables.
+ */
+class ClassFile
+{
+	//Constant pool tags.
+	private static final int UTF8 = 1;
+	private static final int DOUBLE = 6;
+	private static final int CLASS = 7;
+	private static final int FIELD_REF = 9;
+	private static final int METHOD_REF = 10;
+	private static final int NAME_AND_TYPE = 12;
+
+	private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+	private final DataOutputStream pool = new DataOutputStream(poolBytes);
+	private final Map<String, Integer> poolIndexes = new HashMap<>();
+	//Index of the next constant pool entry. Entry 0 doesn't exist.
+	private int poolCount = 1;
+
+	private final int thisClass;
+	private final int superClass;
+	private final List<Code> methods = new ArrayList<>();
+
+	ClassFile(String name, String superName)
+	{
+		thisClass = classRef(name);
+		superClass = classRef(superName);
+	}
+
+	/***
+	 * The bytecode of one method. Tracks the stack depth as instructions are added.
+	 */
+	static class Code
+	{
+		final int access;
+		final int name;
+		final int descriptor;
+
+		private byte[] code = new byte[64];
+		private int length = 0;
+		private int stack = 0;
+		int maxStack = 0;
+		int maxLocals = 0;
+
+		private Code(int access, int name, int descriptor)
+		{
+			this.access = access;
+			this.name = name;
+			this.descriptor = descriptor;
+		}
+
+		/***
+		 * Adds an instruction without operands.
+		 * @param effect how much the instruction grows the stack (negative if it shrinks it).
+		 */
+		void op(int opcode, int effect)
+		{
+			u1(opcode);
+			adjust(effect);
+		}
+
+		/***
+		 * Adds an instruction with a one byte operand.
+		 */
+		void op1(int opcode, int operand, int effect)
+		{
+			u1(opcode);
+			u1(operand);
+			adjust(effect);
+		}
+
+		/***
+		 * Adds an instruction with a two byte operand, like a constant pool index.
+		 */
+		void op2(int opcode, int operand, int effect)
+		{
+			u1(opcode);
+			u2(operand);
+			adjust(effect);
+		}
+
+		/***
+		 * Adds a jump to label.
+		 * Jumps forward get patched once the label is placed.
+		 */
+		void jump(int opcode, Label label, int effect)
+		{
+			int at = length;
+			u1(opcode);
+			u2(0);
+			adjust(effect);
+			if(label.stack < 0)
+				label.stack = stack;
+
+			if(label.position >= 0)
+				patch(at, label.position);
+			else
+				label.jumps.add(at);
+		}
+
+		/***
+		 * Places label at the current position.
+		 * If code already jumps here, the stack is as deep as it was at the jump,
+		 * which matters after an unconditional jump or throw.
+		 */
+		void place(Label label)
+		{
+			label.position = length;
+			if(label.stack >= 0)
+				stack = label.stack;
+			else
+				label.stack = stack;
+
+			for(int at : label.jumps)
+			{
+				patch(at, length);
+			}
+		}
+
+		private void patch(int at, int target)
+		{
+			int offset = target - at;
+			if(offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)
+				throw new IllegalStateException("Jump too far.");
+			code[at + 1] = (byte) (offset >> 8);
+			code[at + 2] = (byte) offset;
+		}
+
+		private void adjust(int effect)
+		{
+			stack += effect;
+			maxStack = Math.max(maxStack, stack);
+		}
+
+		private void u1(int b)
+		{
+			if(length == code.length)
+				code = Arrays.copyOf(code, length * 2);
+			code[length++] = (byte) b;
+		}
+
+		private void u2(int s)
+		{
+			u1(s >> 8);
+			u1(s);
+		}
+	}
+
+	/***
+	 * A position in a method's code that jumps can target.
+	 */
+	static class Label
+	{
+		private int position = -1;
+		private int stack = -1;
+		private final List<Integer> jumps = new ArrayList<>();
+	}
+
+	/***
+	 * Starts a new method.
+	 */
+	Code method(int access, String name, String descriptor)
+	{
+		Code code = new Code(access, utf8(name), utf8(descriptor));
+		methods.add(code);
+		return code;
+	}
+
+	int utf8(String value)
+	{
+		return entry("U" + value, () -> {
+			pool.writeByte(UTF8);
+			pool.writeUTF(value);
+		}, 1);
+	}
+
+	int classRef(String name)
+	{
+		int utf8 = utf8(name);
+		return entry("C" + name, () -> {
+			pool.writeByte(CLASS);
+			pool.writeShort(utf8);
+		}, 1);
+	}
+
+	int doubleConstant(double value)
+	{
+		return entry("D" + Double.doubleToRawLongBits(value), () -> {
+			pool.writeByte(DOUBLE);
+			pool.writeDouble(value);
+		}, 2);
+	}
+
+	int fieldRef(String owner, String name, String descriptor)
+	{
+		return memberRef(FIELD_REF, owner, name, descriptor);
+	}
+
+	int methodRef(String owner, String name, String descriptor)
+	{
+		return memberRef(METHOD_REF, owner, name, descriptor);
+	}
+
+	private int memberRef(int tag, String owner, String name, String descriptor)
+	{
+		int owningClass = classRef(owner);
+		int nameUtf8 = utf8(name);
+		int descriptorUtf8 = utf8(descriptor);
+		int nameAndType = entry("N" + name + ":" + descriptor, () -> {
+			pool.writeByte(NAME_AND_TYPE);
+			pool.writeShort(nameUtf8);
+			pool.writeShort(descriptorUtf8);
+		}, 1);
+		return entry(tag + owner + "." + name + ":" + descriptor, () -> {
+			pool.writeByte(tag);
+			pool.writeShort(owningClass);
+			pool.writeShort(nameAndType);
+		}, 1);
+	}
+
+	private interface Writer
+	{
+		void write() throws IOException;
+	}
+
+	/***
+	 * Adds a constant pool entry unless an equal one is already there.
+	 * @param size how many indexes the entry takes, doubles take 2.
+	 */
+	private int entry(String key, Writer writer, int size)
+	{
+		Integer index = poolIndexes.get(key);
+		if(index != null)
+			return index;
+
+		try{
+			writer.write();
+		} catch(IOException error) {
+			throw new IllegalStateException(error);
+		}
+		index = poolCount;
+		poolCount += size;
+		poolIndexes.put(key, index);
+		return index;
+	}
+
+	/***
+	 * @return the finished class file.
+	 */
+	byte[] toBytes()
+	{
+		int code = utf8("Code");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try{
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(49);
+			out.writeShort(poolCount);
+			pool.flush();
+			poolBytes.writeTo(out);
+
+			//final, super
+			out.writeShort(0x0030);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(0);
+			out.writeShort(0);
+
+			out.writeShort(methods.size());
+			for(Code method : methods)
+			{
+				out.writeShort(method.access);
+				out.writeShort(method.name);
+				out.writeShort(method.descriptor);
+				out.writeShort(1);
+
+				out.writeShort(code);
+				out.writeInt(12 + method.length);
+				out.writeShort(method.maxStack);
+				out.writeShort(method.maxLocals);
+				out.writeInt(method.length);
+				out.write(method.code, 0, method.length);
+				out.writeShort(0);
+				out.writeShort(0);
+			}
+			out.writeShort(0);
+		} catch(IOException error) {
+			throw new IllegalStateException(error);
+		}
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,54 @@
+package JavaInterpreter.Milk;
+
+/***
+ * A MilkFunction whose body has been compiled into nodes by the NodeCompiler.
+ * Calling it runs the body's nodes instead of visiting the statements, everything else
+ * (methods, arity, initializers) works the same as MilkFunction.
+ */
+class CompiledFunction extends MilkFunction
+{
+	private final Node body;
+
+	CompiledFunction(Stmt.Function declaration, Node body, Cell[] upvalues,
+					 boolean isInitializer)
+	{
+		super(declaration, upvalues, isInitializer);
+		this.body = body;
+	}
+
+	/***
+	 * The Jit works on the tree-walker's functions, these have their own way of running.
+	 */
+	@Override
+	boolean usesJit()
+	{
+		return false;
+	}
+
+	/***
+	 * Runs the body. If it ends with a tail call, the called function's body runs next in this same loop.
+	 */
+	@Override
+	Object execute(Interpreter interpreter, Environment environment)
+	{
+		CompiledFunction function = this;
+		environment.box(declaration.boxed);
+		Object returned = body.execute(environment);
+		while(returned instanceof Node.TailCall)
+		{
+			Node.TailCall call = (Node.TailCall) returned;
+			function.release(environment);
+			function = (CompiledFunction) call.function;
+			environment = call.frame;
+			environment.box(function.declaration.boxed);
+			returned = function.body.execute(environment);
+		}
+
+		if(function.isInitializer)
+			returned = environment.receiver();
+		else if(returned == Node.RETURNED_NIL)
+			returned = null;
+		function.release(environment);
+		return returned;
+	}
+}
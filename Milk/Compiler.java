@@ -0,0 +1,913 @@
+package JavaInterpreter.Milk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static JavaInterpreter.Milk.OpCode.*;
+/***
+ * Compiles the syntax tree into bytecode for the VM.
+ *
+ * Runs after the Resolver, so the program is known to be free of static errors.
+ * The Compiler still does its own bookkeeping of locals though, because in the VM
+ * locals live on the VM's stack instead of in Environments:
+ * a local is a slot in its function's stack window, and a local that a nested
+ * function uses is reached through an upvalue.
+ *
+ * Every instruction remembers the line of the token the tree-walker would report
+ * an error at, so both engines print the same line numbers.
+ */
+class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void>
+{
+	private enum FunctionType{
+		SCRIPT,
+		FUNCTION,
+		METHOD,
+		INITIALIZER
+	}
+
+	/***
+	 * A local variable: its name and the depth of the scope that declared it.
+	 * captured is set once a nested function uses it, so it gets closed over instead of popped.
+	 */
+	private static class Local
+	{
+		final String name;
+		final int depth;
+		boolean captured = false;
+
+		Local(String name, int depth)
+		{
+			this.name = name;
+			this.depth = depth;
+		}
+	}
+
+	/***
+	 * Where a closure gets an upvalue from when its created:
+	 * a local of the enclosing function, or one of the enclosing function's upvalues.
+	 */
+	private static class Upvalue
+	{
+		final int index;
+		final boolean isLocal;
+
+		Upvalue(int index, boolean isLocal)
+		{
+			this.index = index;
+			this.isLocal = isLocal;
+		}
+	}
+
+	/***
+	 * Everything the Compiler tracks for the function currently being compiled.
+	 * Nested function declarations push a new state.
+	 */
+	private static class FunctionState
+	{
+		final FunctionState enclosing;
+		final VM.Function function;
+		final FunctionType type;
+		final List<Local> locals = new ArrayList<>();
+		final List<Upvalue> upvalues = new ArrayList<>();
+		int scopeDepth = 0;
+		//How many values are on the function's part of the stack right now.
+		int stackDepth = 0;
+
+		FunctionState(FunctionState enclosing, VM.Function function, FunctionType type)
+		{
+			this.enclosing = enclosing;
+			this.function = function;
+			this.type = type;
+		}
+	}
+
+	//How many values each instruction pushes (or pops, if negative).
+	//Calls depend on their argument count and are handled where they are emitted.
+	private static final int[] STACK_EFFECT = new int[OP_TAIL_CALL_METHOD + 1];
+
+	static
+	{
+		int[] e = STACK_EFFECT;
+		e[OP_CONSTANT] = 1; e[OP_NIL] = 1; e[OP_TRUE] = 1; e[OP_FALSE] = 1; e[OP_POP] = -1;
+		e[OP_GET_LOCAL] = 1; e[OP_GET_GLOBAL] = 1; e[OP_DEFINE_GLOBAL] = -1; e[OP_GET_UPVALUE] = 1;
+		e[OP_SET_PROPERTY] = -1; e[OP_GET_METHOD] = 1; e[OP_GET_SUPER] = -1;
+		for(int op = OP_EQUAL; op <= OP_DIVIDE; op++)
+		{
+			e[op] = -1;
+		}
+		e[OP_PRINT] = -1; e[OP_CLOSURE] = 1; e[OP_CLOSE_UPVALUE] = -1; e[OP_RETURN] = -1;
+		e[OP_CLASS] = 1; e[OP_METHOD] = -1;
+	}
+
+	private static final int MAX_OPERAND = 0xffff;
+
+	private final Environment globals;
+	private FunctionState current = null;
+	//Line of the code being compiled.
+	private int line = 1;
+
+	/***
+	 * @param globals the VM's global table. Global variables are compiled to their index in it.
+	 */
+	Compiler(Environment globals)
+	{
+		this.globals = globals;
+	}
+
+	/***
+	 * Compiles a whole program into the function the VM runs to start it.
+	 */
+	VM.Function compile(List<Stmt> statements)
+	{
+		current = new FunctionState(null, new VM.Function("script", 0), FunctionType.SCRIPT);
+		//Slot 0 holds the function being run.
+		addLocal("");
+		current.stackDepth = 1;
+		current.function.maxStack = 1;
+
+		for(Stmt statement : statements)
+		{
+			compile(statement);
+		}
+		emitReturn();
+		return endFunction();
+	}
+
+	/***
+	 * Compiles a function declaration, the function's code goes into a chunk of its own.
+	 * Emits the instruction that turns it into a closure.
+	 */
+	private void function(Stmt.Function declaration, FunctionType type)
+	{
+		VM.Function function = new VM.Function(declaration.name.lexeme,
+			declaration.params.size());
+		FunctionState state = new FunctionState(current, function, type);
+		current = state;
+		beginScope();
+
+		//Slot 0 holds this in methods. For plain functions it holds the function itself, which nobody can name.
+		if(type == FunctionType.METHOD || type == FunctionType.INITIALIZER)
+		{
+			addLocal("this");
+		}
+		else
+		{
+			addLocal("");
+		}
+		for(Token param : declaration.params)
+		{
+			addLocal(param.lexeme);
+		}
+		current.stackDepth = 1 + declaration.params.size();
+		function.maxStack = current.stackDepth;
+
+		for(Stmt statement : declaration.body)
+		{
+			compile(statement);
+		}
+		emitReturn();
+		endFunction();
+
+		current = state.enclosing;
+		line = declaration.name.line;
+		emit(OP_CLOSURE, makeConstant(function));
+		for(Upvalue upvalue : state.upvalues)
+		{
+			chunk().write(upvalue.isLocal ? 1 : 0, line);
+			emitShort(upvalue.index);
+		}
+	}
+
+	/***
+	 * Wraps up the current function once all of its code is emitted.
+	 */
+	private VM.Function endFunction()
+	{
+		VM.Function function = current.function;
+		function.upvalueCount = current.upvalues.size();
+		function.constants = chunk().constants.toArray();
+		return function;
+	}
+
+	private void compile(Stmt stmt)
+	{
+		stmt.accept(this);
+	}
+
+	private void compile(Expr expr)
+	{
+		expr.accept(this);
+	}
+
+	private Chunk chunk()
+	{
+		return current.function.chunk;
+	}
+
+	/***
+	 * Emitting helpers. Every instruction keeps track of the stack depth,
+	 * so the VM knows how much stack a function can need.
+	 */
+	private void emit(byte op)
+	{
+		chunk().write(op, line);
+		adjustStack(STACK_EFFECT[op]);
+	}
+
+	private void emit(byte op, int operand)
+	{
+		emit(op);
+		emitShort(operand);
+	}
+
+	private void emitShort(int value)
+	{
+		chunk().write(value >> 8, line);
+		chunk().write(value, line);
+	}
+
+	private void adjustStack(int effect)
+	{
+		current.stackDepth += effect;
+		if(current.stackDepth > current.function.maxStack)
+		{
+			current.function.maxStack = current.stackDepth;
+		}
+	}
+
+	/***
+	 * Functions without a return statement return nil. Initializers always return this.
+	 */
+	private void emitReturn()
+	{
+		if(current.type == FunctionType.INITIALIZER)
+		{
+			emit(OP_GET_LOCAL, 0);
+		}
+		else
+		{
+			emit(OP_NIL);
+		}
+		emit(OP_RETURN);
+	}
+
+	/***
+	 * Emits a jump whose distance isn't known yet.
+	 * @return where the distance goes, for patchJump().
+	 */
+	private int emitJump(byte op)
+	{
+		emit(op, MAX_OPERAND);
+		return chunk().count - 2;
+	}
+
+	/***
+	 * Fills in the distance of a jump emitted by emitJump() to land right here.
+	 */
+	private void patchJump(int offset)
+	{
+		int jump = chunk().count - offset - 2;
+		if(jump > MAX_OPERAND)
+		{
+			Milk.error(line, "Too much code to jump over.");
+		}
+		chunk().code[offset] = (byte) (jump >> 8);
+		chunk().code[offset + 1] = (byte) jump;
+	}
+
+	/***
+	 * Emits a jump backwards to loopStart.
+	 */
+	private void emitLoop(int loopStart)
+	{
+		emit(OP_LOOP);
+		int offset = chunk().count - loopStart + 2;
+		if(offset > MAX_OPERAND)
+		{
+			Milk.error(line, "Loop body too large.");
+		}
+		emitShort(offset);
+	}
+
+	private int makeConstant(Object value)
+	{
+		int index = chunk().addConstant(value);
+		if(index > MAX_OPERAND)
+		{
+			Milk.error(line, "Too many constants in one chunk.");
+			return 0;
+		}
+		return index;
+	}
+
+	/***
+	 * @return the index of the global named name in the VM's table.
+	 */
+	private int global(String name)
+	{
+		int index = globals.index(Symbol.of(name));
+		if(index > MAX_OPERAND)
+		{
+			Milk.error(line, "Too many global variables.");
+			return 0;
+		}
+		return index;
+	}
+
+	private void beginScope()
+	{
+		current.scopeDepth++;
+	}
+
+	/***
+	 * Pops the scope's locals off the stack. Captured ones get moved into their upvalue first.
+	 */
+	private void endScope()
+	{
+		current.scopeDepth--;
+
+		List<Local> locals = current.locals;
+		while(!locals.isEmpty() &&
+			locals.get(locals.size() - 1).depth > current.scopeDepth)
+		{
+			if(locals.get(locals.size() - 1).captured)
+			{
+				emit(OP_CLOSE_UPVALUE);
+			}
+			else
+			{
+				emit(OP_POP);
+			}
+			locals.remove(locals.size() - 1);
+		}
+	}
+
+	/***
+	 * Makes the value on top of the stack the next local.
+	 * @return the local's slot.
+	 */
+	private int addLocal(String name)
+	{
+		if(current.locals.size() > MAX_OPERAND)
+		{
+			Milk.error(line, "Too many local variables in function.");
+		}
+		current.locals.add(new Local(name, current.scopeDepth));
+		return current.locals.size() - 1;
+	}
+
+	/***
+	 * Looks for a local of the given function, innermost scope first.
+	 * @return the local's slot, or -1 if there isn't one.
+	 */
+	private int resolveLocal(FunctionState state, String name)
+	{
+		for(int i = state.locals.size() - 1; i >= 0; i--)
+		{
+			if(state.locals.get(i).name.equals(name))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/***
+	 * Looks for a variable in the functions enclosing the given one.
+	 * Every function in between gets an upvalue for it, so the closure can hand it down.
+	 * @return the upvalue's index, or -1 if the variable is global.
+	 */
+	private int resolveUpvalue(FunctionState state, String name)
+	{
+		if(state.enclosing == null)
+			return -1;
+
+		int local = resolveLocal(state.enclosing, name);
+		if(local != -1)
+		{
+			state.enclosing.locals.get(local).captured = true;
+			return addUpvalue(state, local, true);
+		}
+
+		int upvalue = resolveUpvalue(state.enclosing, name);
+		if(upvalue != -1)
+		{
+			return addUpvalue(state, upvalue, false);
+		}
+		return -1;
+	}
+
+	private int addUpvalue(FunctionState state, int index, boolean isLocal)
+	{
+		for(int i = 0; i < state.upvalues.size(); i++)
+		{
+			Upvalue upvalue = state.upvalues.get(i);
+			if(upvalue.index == index && upvalue.isLocal == isLocal)
+				return i;
+		}
+		state.upvalues.add(new Upvalue(index, isLocal));
+		return state.upvalues.size() - 1;
+	}
+
+	/***
+	 * Pushes a variable's value. It's either a local, an upvalue or a global, in that order.
+	 */
+	private void getVariable(String name)
+	{
+		int arg = resolveLocal(current, name);
+		if(arg != -1)
+		{
+			emit(OP_GET_LOCAL, arg);
+		}
+		else if((arg = resolveUpvalue(current, name)) != -1)
+		{
+			emit(OP_GET_UPVALUE, arg);
+		}
+		else
+		{
+			emit(OP_GET_GLOBAL, global(name));
+		}
+	}
+
+	/***
+	 * Stores the value on top of the stack into a variable, leaving it on the stack.
+	 */
+	private void setVariable(String name)
+	{
+		int arg = resolveLocal(current, name);
+		if(arg != -1)
+		{
+			emit(OP_SET_LOCAL, arg);
+		}
+		else if((arg = resolveUpvalue(current, name)) != -1)
+		{
+			emit(OP_SET_UPVALUE, arg);
+		}
+		else
+		{
+			emit(OP_SET_GLOBAL, global(name));
+		}
+	}
+
+	/***
+	 * Declares the value on top of the stack as a variable.
+	 * At the top level its a global, anywhere else it simply stays on the stack as a local.
+	 */
+	private void defineVariable(Token name)
+	{
+		if(current.scopeDepth > 0)
+		{
+			addLocal(name.lexeme);
+			return;
+		}
+		line = name.line;
+		emit(OP_DEFINE_GLOBAL, global(name.lexeme));
+	}
+
+	@Override
+	public Void visitBlockStmt(Stmt.Block stmt)
+	{
+		beginScope();
+		for(Stmt statement : stmt.statements)
+		{
+			compile(statement);
+		}
+		endScope();
+		return null;
+	}
+
+	/***
+	 * Classes compile to: the superclass (kept as the local "super" for the methods to capture),
+	 * the class itself, and one closure per method that gets added to it.
+	 */
+	@Override
+	public Void visitClassStmt(Stmt.Class stmt)
+	{
+		//A local class needs its slot below "super", so it gets a placeholder until its done.
+		int slot = -1;
+		if(current.scopeDepth > 0)
+		{
+			emit(OP_NIL);
+			slot = addLocal(stmt.name.lexeme);
+		}
+
+		if(stmt.superclass != null)
+		{
+			beginScope();
+			compile(stmt.superclass);
+			addLocal("super");
+		}
+
+		line = stmt.name.line;
+		emit(OP_CLASS, makeConstant(stmt.name.lexeme));
+		if(stmt.superclass != null)
+		{
+			line = stmt.superclass.name.line;
+			emit(OP_INHERIT);
+		}
+
+		for(Stmt.Function method : stmt.methods)
+		{
+			FunctionType type = FunctionType.METHOD;
+			if(method.name.symbol == Symbol.INIT)
+			{
+				type = FunctionType.INITIALIZER;
+			}
+			function(method, type);
+			emit(OP_METHOD, makeConstant(method.name.symbol));
+		}
+
+		if(slot != -1)
+		{
+			emit(OP_SET_LOCAL, slot);
+			emit(OP_POP);
+		}
+		else
+		{
+			line = stmt.name.line;
+			emit(OP_DEFINE_GLOBAL, global(stmt.name.lexeme));
+		}
+
+		if(stmt.superclass != null)
+		{
+			endScope();
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitExpressionStmt(Stmt.Expression stmt)
+	{
+		compile(stmt.expression);
+		emit(OP_POP);
+		return null;
+	}
+
+	/***
+	 * A while loop with the initializer in front and the increment after the body.
+	 * Only a var in the initializer needs a scope, and the loop gets just the one.
+	 */
+	@Override
+	public Void visitForStmt(Stmt.For stmt)
+	{
+		boolean scoped = stmt.initializer instanceof Stmt.Var;
+		if(scoped)
+			beginScope();
+		if(stmt.initializer != null)
+			compile(stmt.initializer);
+
+		int loopStart = chunk().count;
+		compile(stmt.condition);
+		int exitJump = emitJump(OP_JUMP_IF_FALSE);
+		emit(OP_POP);
+		compile(stmt.body);
+		if(stmt.increment != null)
+		{
+			compile(stmt.increment);
+			emit(OP_POP);
+		}
+		emitLoop(loopStart);
+
+		patchJump(exitJump);
+		adjustStack(1);
+		emit(OP_POP);
+		if(scoped)
+			endScope();
+		return null;
+	}
+
+	/***
+	 * A local function is declared before its body is compiled, so it can call itself.
+	 */
+	@Override
+	public Void visitFunctionStmt(Stmt.Function stmt)
+	{
+		if(current.scopeDepth > 0)
+		{
+			addLocal(stmt.name.lexeme);
+			function(stmt, FunctionType.FUNCTION);
+			return null;
+		}
+		function(stmt, FunctionType.FUNCTION);
+		defineVariable(stmt.name);
+		return null;
+	}
+
+	/***
+	 * The condition stays on the stack for the jump to look at, each branch pops it.
+	 */
+	@Override
+	public Void visitIfStmt(Stmt.If stmt)
+	{
+		compile(stmt.condition);
+		int thenJump = emitJump(OP_JUMP_IF_FALSE);
+		emit(OP_POP);
+		compile(stmt.thenBranch);
+		int elseJump = emitJump(OP_JUMP);
+
+		patchJump(thenJump);
+		//The else branch starts with the condition still on the stack.
+		adjustStack(1);
+		emit(OP_POP);
+		if(stmt.elseBranch != null)
+		{
+			compile(stmt.elseBranch);
+		}
+		patchJump(elseJump);
+		return null;
+	}
+
+	@Override
+	public Void visitPrintStmt(Stmt.Print stmt)
+	{
+		compile(stmt.expression);
+		emit(OP_PRINT);
+		return null;
+	}
+
+	@Override
+	public Void visitReturnStmt(Stmt.Return stmt)
+	{
+		line = stmt.keyword.line;
+		if(stmt.value == null)
+		{
+			emitReturn();
+		}
+		else if(stmt.tailCall)
+		{
+			call((Expr.Call) stmt.value, true);
+			emit(OP_RETURN);
+		}
+		else
+		{
+			compile(stmt.value);
+			emit(OP_RETURN);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitVarStmt(Stmt.Var stmt)
+	{
+		if(stmt.initializer != null)
+		{
+			compile(stmt.initializer);
+		}
+		else
+		{
+			emit(OP_NIL);
+		}
+		defineVariable(stmt.name);
+		return null;
+	}
+
+	@Override
+	public Void visitWhileStmt(Stmt.While stmt)
+	{
+		int loopStart = chunk().count;
+		compile(stmt.condition);
+		int exitJump = emitJump(OP_JUMP_IF_FALSE);
+		emit(OP_POP);
+		compile(stmt.body);
+		emitLoop(loopStart);
+
+		patchJump(exitJump);
+		adjustStack(1);
+		emit(OP_POP);
+		return null;
+	}
+
+	@Override
+	public Void visitAssignExpr(Expr.Assign expr)
+	{
+		compile(expr.value);
+		line = expr.name.line;
+		setVariable(expr.name.lexeme);
+		return null;
+	}
+
+	@Override
+	public Void visitBinaryExpr(Expr.Binary expr)
+	{
+		compile(expr.left);
+		compile(expr.right);
+
+		line = expr.operator.line;
+		switch(expr.operator.type)
+		{
+			case GREATER:
+				emit(OP_GREATER);
+				break;
+			case GREATER_EQUAL:
+				emit(OP_GREATER_EQUAL);
+				break;
+			case LESS:
+				emit(OP_LESS);
+				break;
+			case LESS_EQUAL:
+				emit(OP_LESS_EQUAL);
+				break;
+			case MINUS:
+				emit(OP_SUBTRACT);
+				break;
+			case PLUS:
+				emit(OP_ADD);
+				break;
+			case SLASH:
+				emit(OP_DIVIDE);
+				break;
+			case STAR:
+				emit(OP_MULTIPLY);
+				break;
+			case BANG_EQUAL:
+				emit(OP_NOT_EQUAL);
+				break;
+			case EQUAL_EQUAL:
+				emit(OP_EQUAL);
+				break;
+		}
+		return null;
+	}
+
+	/***
+	 * Calls of the form object.method() and super.method() leave the method and its receiver
+	 * on the stack, so calling them doesn't need a bound method.
+	 * The callee is still looked up before the arguments run, just like the tree-walker does.
+	 */
+	@Override
+	public Void visitCallExpr(Expr.Call expr)
+	{
+		call(expr, false);
+		return null;
+	}
+
+	/***
+	 * @param tail true if the call is what a return returns, then it's compiled to a tail call.
+	 */
+	private void call(Expr.Call expr, boolean tail)
+	{
+		boolean method = true;
+		if(expr.callee instanceof Expr.Get)
+		{
+			Expr.Get get = (Expr.Get) expr.callee;
+			compile(get.object);
+			line = get.name.line;
+			emit(OP_GET_METHOD, makeConstant(get.name.symbol));
+		}
+		else if(expr.callee instanceof Expr.Super)
+		{
+			Expr.Super sup = (Expr.Super) expr.callee;
+			line = sup.keyword.line;
+			getVariable("this");
+			getVariable("super");
+			line = sup.method.line;
+			emit(OP_SUPER_METHOD, makeConstant(sup.method.symbol));
+		}
+		else
+		{
+			method = false;
+			compile(expr.callee);
+		}
+
+		for(Expr argument : expr.arguments)
+		{
+			compile(argument);
+		}
+
+		int argCount = expr.arguments.size();
+		line = expr.paren.line;
+		if(method)
+		{
+			emit(tail ? OP_TAIL_CALL_METHOD : OP_CALL_METHOD, argCount);
+			adjustStack(-argCount - 1);
+		}
+		else
+		{
+			emit(tail ? OP_TAIL_CALL : OP_CALL, argCount);
+			adjustStack(-argCount);
+		}
+	}
+
+	@Override
+	public Void visitGetExpr(Expr.Get expr)
+	{
+		compile(expr.object);
+		line = expr.name.line;
+		emit(OP_GET_PROPERTY, makeConstant(expr.name.symbol));
+		return null;
+	}
+
+	@Override
+	public Void visitGroupingExpr(Expr.Grouping expr)
+	{
+		compile(expr.expression);
+		return null;
+	}
+
+	@Override
+	public Void visitLiteralExpr(Expr.Literal expr)
+	{
+		if(expr.value == null)
+		{
+			emit(OP_NIL);
+		}
+		else if(expr.value.equals(true))
+		{
+			emit(OP_TRUE);
+		}
+		else if(expr.value.equals(false))
+		{
+			emit(OP_FALSE);
+		}
+		else
+		{
+			emit(OP_CONSTANT, makeConstant(expr.value));
+		}
+		return null;
+	}
+
+	/***
+	 * And/Or short circuit: the right operand only runs if the left one didn't decide it.
+	 */
+	@Override
+	public Void visitLogicalExpr(Expr.Logical expr)
+	{
+		compile(expr.left);
+
+		if(expr.operator.type == TokenType.OR)
+		{
+			int elseJump = emitJump(OP_JUMP_IF_FALSE);
+			int endJump = emitJump(OP_JUMP);
+			patchJump(elseJump);
+			emit(OP_POP);
+			compile(expr.right);
+			patchJump(endJump);
+		}
+		else
+		{
+			int endJump = emitJump(OP_JUMP_IF_FALSE);
+			emit(OP_POP);
+			compile(expr.right);
+			patchJump(endJump);
+		}
+		return null;
+	}
+
+	/***
+	 * The object has to be an instance before the value is evaluated, that's when the tree-walker checks.
+	 */
+	@Override
+	public Void visitSetExpr(Expr.Set expr)
+	{
+		compile(expr.object);
+		line = expr.name.line;
+		emit(OP_CHECK_FIELDS);
+		compile(expr.value);
+		line = expr.name.line;
+		emit(OP_SET_PROPERTY, makeConstant(expr.name.symbol));
+		return null;
+	}
+
+	@Override
+	public Void visitSuperExpr(Expr.Super expr)
+	{
+		line = expr.keyword.line;
+		getVariable("this");
+		getVariable("super");
+		line = expr.method.line;
+		emit(OP_GET_SUPER, makeConstant(expr.method.symbol));
+		return null;
+	}
+
+	@Override
+	public Void visitThisExpr(Expr.This expr)
+	{
+		line = expr.keyword.line;
+		getVariable("this");
+		return null;
+	}
+
+	@Override
+	public Void visitUnaryExpr(Expr.Unary expr)
+	{
+		compile(expr.right);
+		line = expr.operator.line;
+		if(expr.operator.type == TokenType.BANG)
+		{
+			emit(OP_NOT);
+		}
+		else
+		{
+			emit(OP_NEGATE);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitVariableExpr(Expr.Variable expr)
+	{
+		line = expr.name.line;
+		getVariable(expr.name.lexeme);
+		return null;
+	}
+}
@@ -1,109 +1,253 @@
 package JavaInterpreter.Milk;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 /***
- * Hash-table based Environment
- * Keys are Variable names
- * Values are the variable's values.
+ * Environment for variables. Comes in two flavors:
+ * The global environment is an indexed table of cells. A name is looked up once by its Symbol's id to find its cell,
+ * after that whoever holds the cell reads and writes it directly.
+ * Every other environment is the frame of one function call. The Resolver hands each local of the function
+ * a slot, blocks included, so reading a local is an array index instead of hashing its name.
+ *
+ * Frames aren't chained together. A local that a closure uses is kept in a Cell in its slot,
+ * and the closure keeps just that cell (one of its upvalues), so nothing else in the frame stays alive because of it.
  */
 class Environment{
-	//Environment reference to the environment that encloses it. Allows traversal
-	//Each environment has a reference to its enclosing environment.
-	final Environment enclosing;
+	//Value of a global cell whose variable hasn't been defined (yet).
+	static final Object UNDEFINED = new Object();
+	//The upvalues of code that isn't in a function.
+	static final Cell[] NO_UPVALUES = new Cell[0];
 
-	//A map we can map variables to...makes sense
-	private final Map<String, Object> values = new HashMap<>();
+	//Maps a global variable name's Symbol id to its index in the table, plus one...0 means it isn't there
+	private int[] indexes;
+	private final List<Cell> cells;
+	private final List<Symbol> names;
+
+	//The slots of a frame. The arguments are defined in order, the other locals go in the slot the Resolver gave them.
+	private final Object[] slots;
+	private int count = 0;
+	//The cells of the variables the function captured from the functions around it.
+	private Cell[] upvalues;
 
 	Environment()
 	{
-		enclosing = null;
+		indexes = new int[64];
+		cells = new ArrayList<>();
+		names = new ArrayList<>();
+		slots = null;
+		upvalues = null;
 	}
 
-	Environment(Environment enclosing)
+	Environment(int size, Cell[] upvalues)
 	{
-		this.enclosing = enclosing;
+		indexes = null;
+		cells = null;
+		names = null;
+		slots = new Object[size];
+		this.upvalues = upvalues;
 	}
-	
+
 	/***
-	 * Method for variable defining.
+	 * Method for global variable defining.
 	 * Variables name is name, its values is value. Wow who'd thought.
 	 */
-	void define(String name, Object value)
+	void define(Symbol name, Object value)
+	{
+		cell(name).value = value;
+	}
+
+	/***
+	 * Finds the index of a global in the table.
+	 * Names that were never defined get an undefined cell, so a variable can be looked up before its definition runs.
+	 */
+	int index(Symbol name)
+	{
+		if(name.id >= indexes.length)
+			indexes = Arrays.copyOf(indexes, Math.max(name.id + 1, indexes.length * 2));
+		if(indexes[name.id] == 0)
+		{
+			cells.add(new Cell(UNDEFINED));
+			names.add(name);
+			indexes[name.id] = cells.size();
+		}
+		return indexes[name.id] - 1;
+	}
+
+	/***
+	 * @return the global cell at the index.
+	 */
+	Cell cellAt(int index)
+	{
+		return cells.get(index);
+	}
+
+	/***
+	 * @return the name of the global at the index.
+	 */
+	String nameAt(int index)
+	{
+		return names.get(index).name;
+	}
+
+	/***
+	 * @return the cell of the global named name.
+	 */
+	Cell cell(Symbol name)
+	{
+		return cells.get(index(name));
+	}
+
+	/***
+	 * Defines the next argument of a call, they fill the frame from the first slot.
+	 */
+	void define(Object value)
+	{
+		slots[count++] = value;
+	}
+
+	Object getAt(int slot)
+	{
+		return slots[slot];
+	}
+
+	void assignAt(int slot, Object value)
+	{
+		slots[slot] = value;
+	}
+
+	/***
+	 * Empties a frame whose call finished, so it can be used for the next call of the same function.
+	 * The closure's upvalues go too, the next call could be of another closure of it.
+	 */
+	void clear()
+	{
+		Arrays.fill(slots, null);
+		count = 0;
+		upvalues = null;
+	}
+
+	/***
+	 * Gets a frame clear() emptied ready for a call of the closure with these upvalues.
+	 */
+	void reuse(Cell[] upvalues)
+	{
+		this.upvalues = upvalues;
+	}
+
+	/***
+	 * Reads a local wherever the Resolver said it is: a slot, a cell in a slot, or an upvalue.
+	 */
+	Object getAt(int slot, boolean upvalue, boolean captured)
+	{
+		if(upvalue)
+			return upvalues[slot].value;
+		if(captured)
+			return ((Cell) slots[slot]).value;
+		return slots[slot];
+	}
+
+	void assignAt(int slot, boolean upvalue, boolean captured, Object value)
+	{
+		if(upvalue)
+			upvalues[slot].value = value;
+		else if(captured)
+			((Cell) slots[slot]).value = value;
+		else
+			slots[slot] = value;
+	}
+
+	/***
+	 * Defines a captured local: it gets a new cell, closures made from now on share it.
+	 */
+	void box(int slot, Object value)
 	{
-		values.put(name, value);
+		slots[slot] = new Cell(value);
 	}
 
 	/***
-	 * Helper method for getAt()
-	 * Uses a fixed numbers of hops to determine the correct environment
-	 * @return the correct environment
+	 * Puts the arguments in the given slots into cells, for the parameters a closure captured.
 	 */
-	Environment ancestor(int distance)
+	void box(int[] slots)
 	{
-		Environment environment = this;
-		for(int i = 0; i<distance; i++)
+		for(int slot : slots)
 		{
-			environment = environment.enclosing;
+			this.slots[slot] = new Cell(this.slots[slot]);
 		}
+	}
+
+	/***
+	 * @return the cell of a captured local.
+	 */
+	Cell boxed(int slot)
+	{
+		return (Cell) slots[slot];
+	}
 
-		return environment;
+	Cell upvalue(int index)
+	{
+		return upvalues[index];
 	}
-	
+
 	/***
-	 * Rendition of the get() method.
-	 *  We know the distance so we don't need to constantly check each variable.
+	 * Collects the cells a new closure captures, see Stmt.Function.captures.
 	 */
-	Object getAt(int distance, String name)
+	Cell[] capture(int[] captures)
 	{
-		return ancestor(distance).values.get(name);
+		Cell[] cells = new Cell[captures.length];
+		for(int i = 0; i < cells.length; i++)
+		{
+			int capture = captures[i];
+			cells[i] = capture >= 0 ? (Cell) slots[capture] : upvalues[~capture];
+		}
+		return cells;
 	}
-	
+
 	/***
-	 * Assigns a variable at a certain distance.
+	 * @return "this", the first slot of a method's frame. It's in a cell if a closure captured it.
 	 */
-	void assignAt(int distance, Token name, Object value)
+	Object receiver()
 	{
-		ancestor(distance).values.put(name.lexeme, value);
+		Object receiver = slots[0];
+		if(receiver instanceof Cell)
+			return ((Cell) receiver).value;
+		return receiver;
 	}
-	
+
 	/***
-	 * Variable Lookup Method.
-	 * 
+	 * Global Variable Lookup Method.
+	 *
+	 * @param cell the global's cell
+	 * @param name the token that names it, for the error message.
 	 * @throws RuntimeError if variable name doesn't exist
 	 * @return The variable's data. Or a Runtime error.
 	 */
-	Object get(Token name)
+	static Object get(Cell cell, Token name)
 	{
-		if(values.containsKey(name.lexeme))
+		Object value = cell.value;
+		if(value != UNDEFINED)
 		{
-			return values.get(name.lexeme);
+			return value;
 		}
-		//If the value isn't in this scope, we try its enclosing scope.
-		if(enclosing!=null)
-			return enclosing.get(name);
-		throw new RuntimeError(name, 
+
+		throw new RuntimeError(name,
 			"Undefined variable '" + name.lexeme + "'.");
 	}
-	
+
 	/***
-	 * Changes the value in the environment to value.
+	 * Changes the value of a global to value.
+	 * @param cell the global's cell
 	 * @param name The token being changed
 	 * @param value the new value for name.
 	 */
-	void assign(Token name, Object value)
+	static void assign(Cell cell, Token name, Object value)
 	{
-		if(values.containsKey(name.lexeme))
+		if(cell.value != UNDEFINED)
 		{
-			values.put(name.lexeme, value);
-			return;
-		}
-		//If the variable isn't in the environment, check the outer ones.
-		if(enclosing != null)
-		{
-			enclosing.assign(name,value);
+			cell.value = value;
 			return;
 		}
+
 		throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
 	}
 }
@@ -26,6 +26,11 @@ abstract class Expr {
     final Token name;
     final Expr value;
 
+    int slot = -1;
+    boolean upvalue = false;
+    boolean captured = false;
+    Cell global = null;
+
     <R> R accept(Visitor<R> visitor) {
       return visitor.visitAssignExpr(this);
     }
@@ -69,6 +74,8 @@ abstract class Expr {
     final Expr object;
     final Token name;
 
+    InlineCache cache = new InlineCache();
+
     <R> R accept(Visitor<R> visitor) {
       return visitor.visitGetExpr(this);
     }
@@ -121,6 +128,8 @@ abstract class Expr {
     final Token name;
     final Expr value;
 
+    InlineCache cache = new InlineCache();
+
     <R> R accept(Visitor<R> visitor) {
       return visitor.visitSetExpr(this);
     }
@@ -134,6 +143,10 @@ abstract class Expr {
     final Token keyword;
     final Token method;
 
+    int upvalue = 0;
+    Expr.This receiver = null;
+    InlineCache cache = new InlineCache();
+
     <R> R accept(Visitor<R> visitor) {
       return visitor.visitSuperExpr(this);
     }
@@ -145,6 +158,10 @@ abstract class Expr {
 
     final Token keyword;
 
+    int slot = 0;
+    boolean upvalue = false;
+    boolean captured = false;
+
     <R> R accept(Visitor<R> visitor) {
       return visitor.visitThisExpr(this);
     }
@@ -169,6 +186,11 @@ abstract class Expr {
 
     final Token name;
 
+    int slot = -1;
+    boolean upvalue = false;
+    boolean captured = false;
+    Cell global = null;
+
     <R> R accept(Visitor<R> visitor) {
       return visitor.visitVariableExpr(this);
     }
@@ -0,0 +1,286 @@
+package JavaInterpreter.Milk;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+/***
+ * Keeps a script scanned, parsed and resolved while it's being edited, for editor tooling.
+ *
+ * The source is split into units, one per top-level declaration, each running from its first token up to the next one's.
+ * The top level keeps nothing from one declaration to the next (globals aren't in the Resolver's scopes, and a
+ * block's slots are given back when it ends), so a unit can be parsed and resolved on its own.
+ * An edit only scans and parses from the unit before it, until the parser gets to where an old unit after the edit starts.
+ * From there on the source is what it was, just moved, so the old units and their trees are kept.
+ * Kept units just get their offsets moved, and their tokens' lines if the edit added or took out lines.
+ *
+ * Errors aren't printed. Each unit keeps the ones it had, through Milk.errors, and they move along with it. See errors().
+ */
+class IncrementalParser
+{
+	private static class Unit
+	{
+		//Where it starts in the source, and the line that's on.
+		int start;
+		int line;
+		//Null if it had a syntax error.
+		Stmt statement;
+		//Every Token made while parsing it, they're the ones to move.
+		final List<Token> tokens = new ArrayList<>();
+		//How many slots of the top level frame it needs.
+		int frameSize = 0;
+		//Its syntax and resolution errors, as Milk would print them.
+		final List<String> errors = new ArrayList<>();
+
+		Unit(int start, int line)
+		{
+			this.start = start;
+			this.line = line;
+		}
+	}
+
+	private String source;
+	private final List<Unit> units = new ArrayList<>();
+
+	IncrementalParser(String source)
+	{
+		this.source = source;
+		reparse(0, 0, 1, 0, 0, 0);
+	}
+
+	/***
+	 * Takes out removed characters at offset and puts inserted there instead, then brings the statements up to date.
+	 */
+	void edit(int offset, int removed, String inserted)
+	{
+		String text = source.substring(offset, offset + removed);
+		source = source.substring(0, offset) + inserted + source.substring(offset + removed);
+		int delta = inserted.length() - removed;
+		int lines = count(inserted) - count(text);
+
+		//Start from the unit before the one the edit touches. Typing at the start of a unit can join it onto the one
+		//before, and the one before that looked at this unit's first token (an if looks for an else).
+		int first = Math.max(unitAt(offset - 1) - 1, 0);
+		int start = 0;
+		int line = 1;
+		if(first < units.size())
+		{
+			start = units.get(first).start;
+			line = units.get(first).line;
+		}
+
+		//The old units that could still be used are the ones after the edit.
+		int reuse = first + 1;
+		while(reuse < units.size() && units.get(reuse).start < offset + removed)
+			reuse++;
+
+		reparse(first, start, line, reuse, delta, lines);
+	}
+
+	/***
+	 * Parses units from start, which is on line, in place of the old units from first on.
+	 * Once the parser gets to where one of the old units from reuse on starts (moved by delta), that unit and the ones
+	 * after it are kept, moved by delta and lines.
+	 */
+	private void reparse(int first, int start, int line, int reuse, int delta, int lines)
+	{
+		StringReader reader = new StringReader(source);
+		try{
+			reader.skip(start);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		//The parser scans its first token right away, any errors in that go with the first unit.
+		List<String> leading = new ArrayList<>();
+		List<String> enclosing = Milk.errors.get();
+		Milk.errors.set(leading);
+		Parser parser;
+		try{
+			parser = new Parser(new Scanner(reader, line, start));
+		} finally {
+			Milk.errors.set(enclosing);
+		}
+
+		List<Unit> parsed = new ArrayList<>();
+		//The old units from end on are kept.
+		int end = units.size();
+		while(!parser.atEnd())
+		{
+			if(!parsed.isEmpty())
+			{
+				start = parser.offset();
+				line = parser.line();
+
+				//Skip the old units that start before here, they were cut up by the edit.
+				while(reuse < units.size() && units.get(reuse).start + delta < start)
+					reuse++;
+				if(reuse < units.size() && units.get(reuse).start + delta == start)
+				{
+					end = reuse;
+					break;
+				}
+			}
+			parsed.add(parseUnit(parser, start, line, parsed.isEmpty() ? leading : Collections.emptyList()));
+		}
+
+		//If there's nothing but errors left, like an unterminated string, they get a unit with no statement.
+		if(parsed.isEmpty() && !leading.isEmpty())
+		{
+			Unit unit = new Unit(start, line);
+			unit.errors.addAll(leading);
+			parsed.add(unit);
+		}
+
+		for(int i = end; i < units.size(); i++)
+		{
+			move(units.get(i), delta, lines);
+		}
+		units.subList(first, end).clear();
+		units.addAll(first, parsed);
+	}
+
+	/***
+	 * @param leading errors the unit already has, from scanning its first token.
+	 */
+	private Unit parseUnit(Parser parser, int start, int line, List<String> leading)
+	{
+		Unit unit = new Unit(start, line);
+		unit.errors.addAll(leading);
+		List<String> enclosing = Milk.errors.get();
+		Milk.errors.set(unit.errors);
+		try{
+			parser.record(unit.tokens);
+			unit.statement = parser.parseDeclaration();
+			if(unit.statement != null && unit.errors.isEmpty())
+			{
+				Resolver resolver = new Resolver();
+				resolver.resolve(Collections.singletonList(unit.statement));
+				unit.frameSize = resolver.frameSize();
+			}
+		} finally {
+			Milk.errors.set(enclosing);
+		}
+		return unit;
+	}
+
+	private static void move(Unit unit, int delta, int lines)
+	{
+		unit.start += delta;
+		if(lines != 0)
+		{
+			unit.line += lines;
+			for(Token token : unit.tokens)
+			{
+				token.line += lines;
+			}
+			for(int i = 0; i < unit.errors.size(); i++)
+			{
+				unit.errors.set(i, move(unit.errors.get(i), lines));
+			}
+		}
+	}
+
+	/***
+	 * @return error with the line in its "[line n]" moved by lines.
+	 */
+	private static String move(String error, int lines)
+	{
+		int end = error.indexOf(']');
+		if(!error.startsWith("[line ") || end == -1)
+			return error;
+		int line = Integer.parseInt(error.substring("[line ".length(), end));
+		return "[line " + (line + lines) + error.substring(end);
+	}
+
+	/***
+	 * @return the index of the unit offset is in, 0 if there's none before it.
+	 */
+	private int unitAt(int offset)
+	{
+		int low = 0;
+		int high = units.size() - 1;
+		while(low < high)
+		{
+			int middle = (low + high + 1) / 2;
+			if(units.get(middle).start <= offset)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+		return low;
+	}
+
+	private static int count(String text)
+	{
+		int lines = 0;
+		for(int i = 0; i < text.length(); i++)
+		{
+			if(text.charAt(i) == '\n')
+				lines++;
+		}
+		return lines;
+	}
+
+	/***
+	 * @return the statements as of the last edit, resolved. Ones with syntax errors are left out.
+	 */
+	List<Stmt> statements()
+	{
+		List<Stmt> statements = new ArrayList<>();
+		for(Unit unit : units)
+		{
+			if(unit.statement != null)
+				statements.add(unit.statement);
+		}
+		return statements;
+	}
+
+	/***
+	 * @return how many slots the top level code needs, like Resolver.frameSize().
+	 */
+	int frameSize()
+	{
+		int size = 0;
+		for(Unit unit : units)
+		{
+			size = Math.max(size, unit.frameSize);
+		}
+		return size;
+	}
+
+	/***
+	 * @return true if any unit has a syntax or resolution error.
+	 */
+	boolean hadError()
+	{
+		for(Unit unit : units)
+		{
+			if(!unit.errors.isEmpty())
+				return true;
+		}
+		return false;
+	}
+
+	/***
+	 * @return every error as of the last edit, in the order of the code.
+	 */
+	List<String> errors()
+	{
+		List<String> errors = new ArrayList<>();
+		for(Unit unit : units)
+		{
+			errors.addAll(unit.errors);
+		}
+		return errors;
+	}
+
+	/***
+	 * @return the source with every edit made so far.
+	 */
+	String source()
+	{
+		return source;
+	}
+}
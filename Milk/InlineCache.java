@@ -0,0 +1,94 @@
+package JavaInterpreter.Milk;
+
+/***
+ * Remembers which method a property or super lookup found, per class,
+ * and which slot a field is in, per Shape.
+ *
+ * Every Get, Set and Super in the code has its own cache. A class's methods never change once
+ * its declared, so when the same class shows up again the method is already known and
+ * the superclass chain doesn't need to be walked. Shapes never change either, so the same goes for
+ * field slots and for the shape an instance moves to when the field gets added.
+ * Most sites only ever see one or two classes, a site that sees more than MAX_ENTRIES just does the lookup every time.
+ * So does one that sees a shape in dictionary mode.
+ */
+class InlineCache
+{
+	private static final int MAX_ENTRIES = 4;
+
+	private final MilkClass[] classes = new MilkClass[MAX_ENTRIES];
+	private final MilkFunction[] methods = new MilkFunction[MAX_ENTRIES];
+	private int size = 0;
+
+	private final Shape[] shapes = new Shape[MAX_ENTRIES];
+	private final int[] slots = new int[MAX_ENTRIES];
+	private int fieldCount = 0;
+
+	private final Shape[] from = new Shape[MAX_ENTRIES];
+	private final Shape[] to = new Shape[MAX_ENTRIES];
+	private int transitionCount = 0;
+
+	/***
+	 * Finds the method named name in klass or its superclasses.
+	 * @return the unbound method, or null if there isn't one.
+	 */
+	MilkFunction lookup(MilkClass klass, Symbol name)
+	{
+		for(int i = 0; i < size; i++)
+		{
+			if(classes[i] == klass)
+				return methods[i];
+		}
+
+		MilkFunction method = klass.findMethod(name);
+		if(size < MAX_ENTRIES)
+		{
+			classes[size] = klass;
+			methods[size] = method;
+			size++;
+		}
+		return method;
+	}
+
+	/***
+	 * @return the slot of the field named name in instances of shape, or -1 if they don't have it.
+	 */
+	int slot(Shape shape, Symbol name)
+	{
+		for(int i = 0; i < fieldCount; i++)
+		{
+			if(shapes[i] == shape)
+				return slots[i];
+		}
+
+		int slot = shape.slotOf(name);
+		//A shape in dictionary mode changes as fields are added, so what it says now can't be kept.
+		if(!shape.dictionary && fieldCount < MAX_ENTRIES)
+		{
+			shapes[fieldCount] = shape;
+			slots[fieldCount] = slot;
+			fieldCount++;
+		}
+		return slot;
+	}
+
+	/***
+	 * @return the shape an instance of shape moves to when the field named name is added.
+	 */
+	Shape transition(Shape shape, Symbol name)
+	{
+		for(int i = 0; i < transitionCount; i++)
+		{
+			if(from[i] == shape)
+				return to[i];
+		}
+
+		Shape next = shape.with(name);
+		if(!next.dictionary && transitionCount < MAX_ENTRIES)
+		{
+			from[transitionCount] = shape;
+			to[transitionCount] = next;
+			transitionCount++;
+		}
+		return next;
+	}
+}
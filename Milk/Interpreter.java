@@ -1,6 +1,5 @@
 package JavaInterpreter.Milk;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.HashMap;
 import java.util.Map;
@@ -8,12 +7,31 @@ import java.util.Map;
 class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 {
 	final Environment globals = new Environment();
-	private Environment environment = globals;
-	private final Map<Expr, Integer> locals = new HashMap<>();
+	//The frame of the function that's running, or of the top level code.
+	private Environment environment;
+	//Set by a return statement. Blocks and loops stop running as soon as its set,
+	//then the function call takes the value and clears it.
+	private boolean returning = false;
+	private Object returnValue = null;
+	//How many calls are running right now, see Milk.maxDepth.
+	int depth = 0;
+	//Returned instead of a value by a call in tail position. The function to run next and its
+	//environment are left in tailFunction and tailFrame, and MilkFunction.execute() runs it in the same Java frame.
+	static final Object TAIL_CALL = new Object();
+	MilkFunction tailFunction = null;
+	Environment tailFrame = null;
 
 	Interpreter()
 	{
-		globals.define("clock", new MilkCallable(){
+		defineNatives(globals);
+	}
+
+	/***
+	 * Defines the functions Milk comes with. Shared with the VM, so both engines have the same ones.
+	 */
+	static void defineNatives(Environment globals)
+	{
+		globals.define(Symbol.of("clock"), new MilkCallable(){
 			@Override
 			public int arity()
 			{
@@ -22,7 +40,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 
 			@Override
 			public Object call(Interpreter interpreter,
-							   List<Object> arguments)
+							   Object[] arguments)
 			{
 				return (double) System.currentTimeMillis()/1000.0;
 			}
@@ -39,9 +57,11 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 	 * This is the method that starts up the whole interpretre.
 	 * it takes the list of statements and process them one by one. 
 	 * Expressions are within Statements.
+	 * @param frameSize the slots the top level code needs, see Resolver.frameSize().
 	 */
-	void interpret(List<Stmt> statements)
+	void interpret(List<Stmt> statements, int frameSize)
 	{
+		environment = new Environment(frameSize, Environment.NO_UPVALUES);
 		try{
 			for(Stmt statement : statements)
 			{
@@ -114,34 +134,38 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 		}
 
 		Object value = evaluate(expr.value);
-		((MilkInstance) object).set(expr.name, value);
+		((MilkInstance) object).set(expr.name, value, expr.cache);
 		return value;
 	}
 
 	@Override
 	public Object visitSuperExpr(Expr.Super expr)
 	{
-		int distance = locals.get(expr);
-		MilkClass superclass = (MilkClass) environment.getAt(
-			distance, "super");
-		MilkInstance object = (MilkInstance) environment.getAt(
-			distance - 1, "this");
-		MilkFunction method = superclass.findMethod(
-			object, expr.method.lexeme);
+		MilkFunction method = superMethod(expr);
+		return method.bind((MilkInstance) evaluate(expr.receiver));
+	}
+
+	/***
+	 * Finds the method super.method refers to, without binding it.
+	 */
+	private MilkFunction superMethod(Expr.Super expr)
+	{
+		MilkClass superclass = (MilkClass) environment.upvalue(expr.upvalue).value;
+		MilkFunction method = expr.cache.lookup(superclass,
+			expr.method.symbol);
 
 		if(method == null)
 		{
 			throw new RuntimeError(expr.method,
 				"Undefined property '" + expr.method.lexeme + "' .");
 		}
-		
 		return method;
 	}
 
 	@Override
 	public Object visitThisExpr(Expr.This expr)
 	{
-		return lookUpVariable(expr.keyword, expr);
+		return environment.getAt(expr.slot, expr.upvalue, expr.captured);
 	}
 	/***
 
@@ -172,7 +196,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 				//Dynamic-Casting happens right here!
 				checkNumberOperand(expr.operator, right);
 				//Cool that we still use the JVM for stuff.
-				return -(double)right;
+				return Numbers.negate(right);
 		}
 		//Impossible to reach. 
 		return null;
@@ -180,33 +204,22 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 	
 	/***
 	 * Variable Evaluation method
-	 * Uses the helper method lookUpVariable.
+	 * Locals are read from the slot or upvalue the Resolver left on the node.
 	 * @return the variable's data.
 	 */
 	@Override
 	public Object visitVariableExpr(Expr.Variable expr)
 	{
-		return lookUpVariable(expr.name, expr);
-	}
-
-	/***
-	 * Method tht looks up variable based on distance.
-	 */
-	private Object lookUpVariable(Token name, Expr expr)
-	{
-		Integer distance = locals.get(expr);
-		//Uses helper method to go into other environments and find other variables.
-		if(distance != null)
+		//Globals cache their cell on the node after the first lookup.
+		if(expr.slot == -1)
 		{
-			return environment.getAt(distance, name.lexeme);
-		}
-		//If no distance then the variable is global.
-		else
-		{
-			return globals.get(name);
+			if(expr.global == null)
+				expr.global = globals.cell(expr.name.symbol);
+			return Environment.get(expr.global, expr.name);
 		}
+		return environment.getAt(expr.slot, expr.upvalue, expr.captured);
 	}
-	
+
 	/***
 	 * The checkNumberOperand(s)() methods are the error-handling of Milk
 	 * They are incredibly important.
@@ -216,7 +229,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 	//Validator that ensures operands are correct
 	private void checkNumberOperand(Token operator, Object operand)
 	{
-		if(operand instanceof Double)
+		if(Numbers.isNumber(operand))
 			return;
 		throw new RuntimeError(operator, "Operand must be a number.");
 	}
@@ -225,7 +238,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 	private void checkNumberOperands(Token operator, 
 										Object left, Object right)
 	{	
-		if(left instanceof Double && right instanceof Double)
+		if(Numbers.isNumber(left) && Numbers.isNumber(right))
 			return;
 		throw new RuntimeError(operator, "Operands must be numbers");
 	}
@@ -254,42 +267,46 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 	 	Object left = evaluate(expr.left);
 	 	Object right = evaluate(expr.right);
 
+	 	//Two whole numbers, like a loop counter and its limit. No checks or conversions needed.
+	 	if(left instanceof Long && right instanceof Long)
+	 		return integers(expr.operator, (long) left, (long) right);
+
 	 	switch(expr.operator.type)
 	 	{
 	 		case GREATER:
 	 			checkNumberOperands(expr.operator, left, right);
-	 			return (double) left > (double) right;
+	 			return Numbers.greater(left, right);
 	 		case GREATER_EQUAL:
 	 			checkNumberOperands(expr.operator, left, right);
-	 			return (double) left >= (double) right;
+	 			return Numbers.greaterEqual(left, right);
 	 		case LESS:
 	 			checkNumberOperands(expr.operator, left, right);
-	 			return (double) left < (double) right;
+	 			return Numbers.less(left, right);
 	 		case LESS_EQUAL:
 	 			checkNumberOperands(expr.operator, left, right);
-	 			return (double) left <= (double) right;
+	 			return Numbers.lessEqual(left, right);
  	 		case MINUS:
  	 			checkNumberOperands(expr.operator, left, right);
-	 			return (double) left - (double) right;
+	 			return Numbers.subtract(left, right);
 	 		// + could be used to concatenate strings, so must account
 	 		// for that
 	 		case PLUS:
-	 			if(left instanceof Double && right instanceof Double)
+	 			if(Numbers.isNumber(left) && Numbers.isNumber(right))
 	 			{
-	 				return (double) left + (double) right;
+	 				return Numbers.add(left, right);
 	 			}
 	 			//Also if one is string and the other double, need to account for that.
 	 			//Ex: 2+string returns 2string.
-	 			if(left instanceof Double && right instanceof String)
+	 			if(Numbers.isNumber(left) && right instanceof String)
 	 			{
-	 				String stringLeft = left.toString();
-	 				return (String) right + (String) stringLeft;
+	 				String stringLeft = Numbers.toString(left);
+	 				return (String) right + stringLeft;
 	 			}
 
-	 			if(left instanceof String && right instanceof Double)
+	 			if(left instanceof String && Numbers.isNumber(right))
 	 			{
-	 				String stringRight = right.toString();
-	 				return (String) stringRight + (String) left;
+	 				String stringRight = Numbers.toString(right);
+	 				return stringRight + (String) left;
 	 			}
 
 	 			if(left instanceof String && right instanceof String)
@@ -302,12 +319,10 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 
 	 		case SLASH:
 	 			checkNumberOperands(expr.operator, left, right);
-	 			if((double)right == 0)
-	 				return 0;
-	 			return (double) left / (double) right;
+	 			return Numbers.divide(left, right);
 	 		case STAR:
 	 			checkNumberOperands(expr.operator, left, right);
-	 			return (double) left * (double) right;
+	 			return Numbers.multiply(left, right);
 	 		case BANG_EQUAL:
 	 			return !isEqual(left,right);
 	 		case EQUAL_EQUAL:
@@ -317,6 +332,37 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 	 	// Unreachable but necessary
 	 	return null;
 	 }
+
+	/***
+	 * visitBinaryExpr() for two whole numbers.
+	 */
+	private static Object integers(Token operator, long left, long right)
+	{
+		switch(operator.type)
+		{
+			case GREATER:
+				return left > right;
+			case GREATER_EQUAL:
+				return left >= right;
+			case LESS:
+				return left < right;
+			case LESS_EQUAL:
+				return left <= right;
+			case MINUS:
+				return Numbers.subtract(left, right);
+			case PLUS:
+				return Numbers.add(left, right);
+			case SLASH:
+				return Numbers.divide(left, right);
+			case STAR:
+				return Numbers.multiply(left, right);
+			case BANG_EQUAL:
+				return left != right;
+			case EQUAL_EQUAL:
+				return left == right;
+		}
+		return null;
+	}
 	 
 	 /***
 	  * First evaluates the callee. 
@@ -325,31 +371,165 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 	@Override
 	public Object visitCallExpr(Expr.Call expr)
 	{
+		if(depth == Milk.maxDepth)
+			throw new RuntimeError(expr.paren, "Stack overflow.");
+
+		//Running out of Java stack first is possible too (deep expressions, or Jit code calling itself),
+		//that's reported the same way.
+		depth++;
+		try{
+			return call(expr, false);
+		} catch(StackOverflowError overflow) {
+			throw new RuntimeError(expr.paren, "Stack overflow.");
+		} finally {
+			depth--;
+		}
+	}
+
+	/***
+	 * @param tail whether the call is in tail position. Then Milk functions and methods aren't run here,
+	 * they're handed back as a TAIL_CALL.
+	 */
+	private Object call(Expr.Call expr, boolean tail)
+	{
+		//object.method() and super.method() call the method directly with its receiver,
+		//so there's no need to make a bound method first.
+		if(expr.callee instanceof Expr.Get)
+		{
+			Expr.Get get = (Expr.Get) expr.callee;
+			Object object = evaluate(get.object);
+			if(!(object instanceof MilkInstance))
+			{
+				throw new RuntimeError(get.name,
+					"Only instances have properties.");
+			}
+
+			MilkInstance instance = (MilkInstance) object;
+			MilkFunction method = instance.method(get.name, get.cache);
+			if(method != null)
+				return invoke(expr, method, method.frame(instance), tail);
+			//A field, call whatever is in it.
+			return call(expr, instance.get(get.name, get.cache));
+		}
+
+		if(expr.callee instanceof Expr.Super)
+		{
+			Expr.Super superExpr = (Expr.Super) expr.callee;
+			MilkFunction method = superMethod(superExpr);
+			return invoke(expr, method, method.frame(
+				(MilkInstance) evaluate(superExpr.receiver)), tail);
+		}
+
 		Object callee = evaluate(expr.callee);
+		if(tail && callee instanceof MilkFunction)
+		{
+			MilkFunction function = (MilkFunction) callee;
+			return invoke(expr, function, function.frame(), true);
+		}
+		return call(expr, callee);
+	}
+
+	/***
+	 * Calls callee. The arguments are evaluated first, then checked.
+	 * Up to 4 arguments are passed one by one, more go in an array.
+	 */
+	private Object call(Expr.Call expr, Object callee)
+	{
+		List<Expr> arguments = expr.arguments;
+		switch(arguments.size())
+		{
+			case 0:
+				return callable(expr.paren, callee, 0).call0(this);
+			case 1:
+			{
+				Object a = evaluate(arguments.get(0));
+				return callable(expr.paren, callee, 1).call1(this, a);
+			}
+			case 2:
+			{
+				Object a = evaluate(arguments.get(0));
+				Object b = evaluate(arguments.get(1));
+				return callable(expr.paren, callee, 2).call2(this, a, b);
+			}
+			case 3:
+			{
+				Object a = evaluate(arguments.get(0));
+				Object b = evaluate(arguments.get(1));
+				Object c = evaluate(arguments.get(2));
+				return callable(expr.paren, callee, 3).call3(this, a, b, c);
+			}
+			case 4:
+			{
+				Object a = evaluate(arguments.get(0));
+				Object b = evaluate(arguments.get(1));
+				Object c = evaluate(arguments.get(2));
+				Object d = evaluate(arguments.get(3));
+				return callable(expr.paren, callee, 4).call4(this, a, b, c, d);
+			}
+		}
+
+		Object[] values = new Object[arguments.size()];
+		for(int i = 0; i < values.length; i++)
+		{
+			values[i] = evaluate(arguments.get(i));
+		}
+		return callable(expr.paren, callee, values.length).call(this, values);
+	}
 
-		//Evaluate each argument.
-		List<Object> arguments = new ArrayList<>();
+	/***
+	 * Arguments go straight into the function's new environment, after "this" for a method.
+	 */
+	private Object invoke(Expr.Call expr, MilkFunction method, Environment frame, boolean tail)
+	{
+		//The frame only has room for the right number, the wrong number still gets evaluated before the error.
+		if(expr.arguments.size() != method.arity())
+		{
+			for(Expr argument : expr.arguments)
+			{
+				evaluate(argument);
+			}
+			checkArity(expr.paren, method.arity(), expr.arguments.size());
+		}
 		for(Expr argument : expr.arguments)
 		{
-			arguments.add(evaluate(argument));
+			frame.define(evaluate(argument));
 		}
+
+		if(tail)
+		{
+			tailFunction = method;
+			tailFrame = frame;
+			return TAIL_CALL;
+		}
+		return method.execute(this, frame);
+	}
+
+	/***
+	 * @return callee, if it can be called with count arguments.
+	 */
+	private static MilkCallable callable(Token paren, Object callee, int count)
+	{
 		//Don't want people (me) to try calling methods with strings.
 		if(!(callee instanceof MilkCallable))
 		{
-			throw new RuntimeError(expr.paren,
+			throw new RuntimeError(paren,
 				"Can only call functions and classes.");
 		}
-		
-		//If there isn't enough or too many arguments.
+
 		MilkCallable function = (MilkCallable) callee;
-		if(arguments.size() != function.arity())
+		checkArity(paren, function.arity(), count);
+		return function;
+	}
+
+	//If there isn't enough or too many arguments.
+	static void checkArity(Token paren, int arity, int count)
+	{
+		if(count != arity)
 		{
-			throw new RuntimeError(expr.paren, "Expected " +
-				function.arity() + " arguments but got " +
-				arguments.size() + ".");
+			throw new RuntimeError(paren, "Expected " +
+				arity + " arguments but got " +
+				count + ".");
 		}
-
-		return function.call(this, arguments);
 	}
 	
 	/***
@@ -363,7 +543,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 		Object object = evaluate(expr.object);
 		if(object instanceof MilkInstance)
 		{
-			return ((MilkInstance) object).get(expr.name);
+			return ((MilkInstance) object).get(expr.name, expr.cache);
 		}
 
 		throw new RuntimeError(expr.name,
@@ -410,17 +590,23 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 	}
 
 	/***
-	 * Depth refers to the number of environments between the current and enclosing one.
+	 * Defines a variable. Globals are defined by name, locals go in the slot the Resolver gave them.
+	 * A captured local gets a new cell, closures made from now on share it.
 	 */
-	void resolve(Expr expr, int depth)
+	private void define(Token name, int slot, boolean captured, Object value)
 	{
-		locals.put(expr, depth);
+		if(slot == -1)
+			globals.define(name.symbol, value);
+		else if(captured)
+			environment.box(slot, value);
+		else
+			environment.assignAt(slot, value);
 	}
 	
 	/***
-	 * Create a new Environment for the block's scope.
+	 * Runs a function's body in its frame.
 	 * Executes the list of statements.
-	 * Finally it replaces environment w the previous one. Meaning it goes out of the block environment.
+	 * Finally it replaces environment w the previous one. Meaning it goes back to the caller's frame.
 	 */
 	void executeBlock(List<Stmt> statements, Environment environment)
 	{
@@ -432,6 +618,8 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 			for(Stmt statement : statements)
 			{
 				execute(statement);
+				if(returning)
+					break;
 			}
 		}
 		finally
@@ -441,12 +629,17 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 	}
 	/***
 	 * Block visitor
-	 * Calls executeBlock()
+	 * The block's locals have their own slots in the frame, so it runs right in it.
 	 */
 	@Override
 	public Void visitBlockStmt(Stmt.Block stmt)
 	{
-		executeBlock(stmt.statements, new Environment(environment));
+		for(Stmt statement : stmt.statements)
+		{
+			execute(statement);
+			if(returning)
+				break;
+		}
 		return null;
 	}
 	/***
@@ -465,35 +658,31 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 					"Superclass must be a class.");
 			}
 		}
-		//Declare class name into the environment
-		environment.define(stmt.name.lexeme, null);
-
+		//Methods capture super, and the class's name if they use it, so the cells come first.
 		if(stmt.superclass != null)
-		{
-			environment = new Environment(environment);
-			environment.define("super", superclass);
-		}
+			environment.box(stmt.superSlot, superclass);
+		if(stmt.captured)
+			environment.box(stmt.slot, null);
 		
-		Map<String, MilkFunction> methods = new HashMap<>();
+		Map<Symbol, MilkFunction> methods = new HashMap<>();
 		//Turn the AST Node into the runtime representation.
 		for(Stmt.Function method : stmt.methods)
 		{
-			MilkFunction function = new MilkFunction(method,environment,
-				method.name.lexeme.equals("init"));
-			methods.put(method.name.lexeme, function);
+			MilkFunction function = new MilkFunction(method,
+				environment.capture(method.captures),
+				method.name.symbol == Symbol.INIT);
+			methods.put(method.name.symbol, function);
 		}
 
 		//Turn the class node into MilkClass, the runtime representation of a class.
 		MilkClass klass = new MilkClass(stmt.name.lexeme, 
 			(MilkClass) superclass, methods);
-		
-		if(superclass != null)
-		{
-			environment = environment.enclosing;
-		}
 
-		//Assign the class into the environment.
-		environment.assign(stmt.name, klass);
+		//Define the class into the environment. Methods look the name up when they run, so this can come last.
+		if(stmt.captured)
+			environment.boxed(stmt.slot).value = klass;
+		else
+			define(stmt.name, stmt.slot, false, klass);
 		return null;
 	}
 	/***
@@ -507,6 +696,28 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 		return null;
 	}
 
+	/***
+	 * For Visitor
+	 * The initializer runs once, so a var in it is the same variable for the whole loop.
+	 */
+	@Override
+	public Void visitForStmt(Stmt.For stmt)
+	{
+		if(stmt.initializer != null)
+			execute(stmt.initializer);
+
+		while(isTruthy(evaluate(stmt.condition)))
+		{
+			execute(stmt.body);
+			if(returning)
+				break;
+			if(stmt.increment != null)
+				evaluate(stmt.increment);
+		}
+
+		return null;
+	}
+
 	/***
 	 * Create a new function of the given stmt.
 	 * Define the function int othe environment.
@@ -514,9 +725,15 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 	@Override
 	public Void visitFunctionStmt(Stmt.Function stmt)
 	{
-		MilkFunction function = new MilkFunction(stmt, environment, 
-			false);
-		environment.define(stmt.name.lexeme, function);
+		//A function that calls itself captured its own name, the cell has to be there before the closure takes it.
+		if(stmt.captured)
+			environment.box(stmt.slot, null);
+		MilkFunction function = new MilkFunction(stmt,
+			environment.capture(stmt.captures), false);
+		if(stmt.captured)
+			environment.boxed(stmt.slot).value = function;
+		else
+			define(stmt.name, stmt.slot, false, function);
 		return null;
 	}
 	
@@ -555,17 +772,34 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 	}
 
 	/***
-	 * Return becomes an exception because, it is the fastest way the interpeter can unwind itself off the call stack. 
+	 * Return doesn't unwind anything itself, it stores the value and sets returning.
+	 * Every block and loop it's in stops, up to the function call, which picks the value up with finishCall().
 	 * If there is no value, methods return null. (or nil in Milk terms.)
 	 */
 	@Override
 	public Void visitReturnStmt(Stmt.Return stmt)
 	{
 		Object value = null;
-		if(stmt.value != null)
+		if(stmt.tailCall)
+			value = call((Expr.Call) stmt.value, true);
+		else if(stmt.value != null)
 			value = evaluate(stmt.value);
 
-		throw new Return(value);
+		returnValue = value;
+		returning = true;
+		return null;
+	}
+
+	/***
+	 * Called when a function's body is done.
+	 * @return what the body returned, nil if it didn't.
+	 */
+	Object finishCall()
+	{
+		Object value = returnValue;
+		returning = false;
+		returnValue = null;
+		return value;
 	}
 
 	@Override
@@ -577,7 +811,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 			value = evaluate(stmt.initializer);
 		}
 
-		environment.define(stmt.name.lexeme, value);
+		define(stmt.name, stmt.slot, stmt.captured, value);
 		return null;
 	}
 
@@ -591,6 +825,8 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 		while(isTruthy(evaluate(stmt.condition)))
 		{
 			execute(stmt.body);
+			if(returning)
+				break;
 		}
 
 		return null;
@@ -600,7 +836,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 	 * Assignment doesn't create a new variable, only alters the definition.
 	 * Evaluate the expression's value type.
 	 * 
-	 * We look for the distance. If it exists, we find the variable at the distance. Otherwise, we assume its global.
+	 * We look for the slot. If there is one, we find the variable there. Otherwise, we assume its global.
 	 * 
 	 * Assign the variable into the environment.
 	 * 
@@ -611,14 +847,15 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 	{
 		Object value = evaluate(expr.value);
 
-		Integer distance = locals.get(expr);
-		if(distance != null)
+		if(expr.slot != -1)
 		{
-			environment.assign(expr.name,value);
+			environment.assignAt(expr.slot, expr.upvalue, expr.captured, value);
 		} 
 		else
 		{
-			globals.assign(expr.name, value);
+			if(expr.global == null)
+				expr.global = globals.cell(expr.name.symbol);
+			Environment.assign(expr.global, expr.name, value);
 		}
 		return value;
 	}
@@ -639,7 +876,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 	@return false if the object is null, if its boolean return it. Otherwise, if its not null or boolean, return true.
 	*/
 
-	private boolean isTruthy(Object object)
+	static boolean isTruthy(Object object)
 	{
 		if(object == null)
 			return false;
@@ -653,12 +890,15 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 	 * 
 	 * @return if both are null, true. If one is null, false. All other cases use .equals()
 	 */
-	private boolean isEqual(Object a, Object b)
+	static boolean isEqual(Object a, Object b)
 	{
 		if(a==null && b == null)
 			return true;
 		if(a== null)
 			return false;
+		//A whole number can be a Long on one side and a Double on the other.
+		if(Numbers.isNumber(a) && Numbers.isNumber(b))
+			return Numbers.equal(a, b);
 		return a.equals(b);
 	}
 	
@@ -668,15 +908,15 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void>
 	 * 
 	 * @return the string version of inputted object.
 	 */
-	private String stringify(Object object)
+	static String stringify(Object object)
 	{
 		if(object == null)
 			return "nil";
 
 		//Hack. Work around Java adding ".0" to integer-valued doubles.
-		if(object instanceof Double)
+		if(Numbers.isNumber(object))
 		{
-			String text = object.toString();
+			String text = Numbers.toString(object);
 			if(text.endsWith(".0"))
 			{
 				text = text.substring(0,text.length()-2);
@@ -0,0 +1,766 @@
+package JavaInterpreter.Milk;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+/***
+ * Compiles hot functions into JVM bytecode, so HotSpot can optimize Milk code like Java code.
+ *
+ * Every call of a MilkFunction goes through call(). Once a function has been called THRESHOLD times
+ * its declaration gets compiled into a hidden class, and later calls run that instead of
+ * the Interpreter's executeBlock().
+ *
+ * Only numeric kernels get compiled: functions that work on numbers and booleans in their own locals,
+ * read globals that hold numbers and call themselves. Nothing they do can be seen from outside
+ * (no printing, no assigning globals or fields), so when a guard fails halfway through,
+ * the compiled code gives up and the whole call just runs again in the Interpreter. The guards are:
+ * the arguments and the globals are numbers, the function being called is still this one,
+ * and nothing gets divided by zero (which gives the Interpreter's 0 instead of a number).
+ */
+class Jit
+{
+	//Calls before a function gets compiled.
+	static final int THRESHOLD = 200;
+	//Guard failures before compiled code gets thrown away for good.
+	static final int MAX_DEOPTS = 16;
+
+	//What call() returns when the function has to run in the Interpreter.
+	static final Object NOT_COMPILED = new Object();
+
+	private static final String CODE = "JavaInterpreter/Milk/Jit$Code";
+	private static final String CELL = "JavaInterpreter/Milk/Cell";
+	private static final String DEOPT = "JavaInterpreter/Milk/Jit$Deopt";
+	private static final String NUMBERS = "JavaInterpreter/Milk/Numbers";
+	private static final Deopt deopt = new Deopt();
+
+	/***
+	 * What the compiled functions extend. The generated run() method is the function,
+	 * invoke() unpacks the arguments for it.
+	 */
+	abstract static class Code
+	{
+		final Stmt.Function declaration;
+		//The globals the function reads, in the order of their indexes in the bytecode.
+		final Cell[] cells;
+		int deopts = 0;
+		//How many calls are running, counting the Interpreter's. run() deopts rather than go past Milk.maxDepth.
+		int depth = 0;
+
+		Code(Stmt.Function declaration, Cell[] cells)
+		{
+			this.declaration = declaration;
+			this.cells = cells;
+		}
+
+		abstract double invoke(double[] arguments);
+
+		/***
+		 * Guard for a call to itself: the global still has to be this function.
+		 */
+		final boolean isSelf(Object value)
+		{
+			return value instanceof MilkFunction &&
+				((MilkFunction) value).declaration == declaration;
+		}
+	}
+
+	/***
+	 * Thrown by compiled code when a guard fails.
+	 */
+	static final class Deopt extends RuntimeException
+	{
+		private static final long serialVersionUID = 1L;
+
+		Deopt()
+		{
+			super(null, null, false, false);
+		}
+	}
+
+	/***
+	 * Called from the compiled code.
+	 */
+	static Deopt deopt()
+	{
+		return deopt;
+	}
+
+	/***
+	 * Runs the function's compiled code, compiling it first if the function just became hot.
+	 * @return the result, or NOT_COMPILED if the Interpreter has to run the call.
+	 */
+	static Object call(MilkFunction function, Interpreter interpreter,
+		Object[] arguments)
+	{
+		Stmt.Function declaration = function.declaration;
+		Code code = declaration.compiled;
+		if(code == null)
+		{
+			if(declaration.uncompilable || ++declaration.calls < THRESHOLD)
+				return NOT_COMPILED;
+
+			code = compile(declaration, interpreter.globals);
+			if(code == null)
+			{
+				declaration.uncompilable = true;
+				return NOT_COMPILED;
+			}
+			declaration.compiled = code;
+		}
+
+		double[] values = new double[arguments.length];
+		for(int i = 0; i < values.length; i++)
+		{
+			Object argument = arguments[i];
+			if(!Numbers.isNumber(argument))
+				return NOT_COMPILED;
+			values[i] = Numbers.toDouble(argument);
+		}
+
+		//The Interpreter already counted this call, run() counts it again.
+		code.depth = interpreter.depth - 1;
+		try{
+			return code.invoke(values);
+		} catch(Deopt failed) {
+			if(++code.deopts >= MAX_DEOPTS)
+			{
+				declaration.compiled = null;
+				declaration.uncompilable = true;
+			}
+			return NOT_COMPILED;
+		}
+	}
+
+	/***
+	 * @return the compiled function, or null if it does something that can't be compiled.
+	 */
+	private static Code compile(Stmt.Function declaration, Environment globals)
+	{
+		try{
+			Emitter emitter = new Emitter(declaration, globals);
+			byte[] bytes = emitter.emit();
+			MethodHandles.Lookup lookup = MethodHandles.lookup()
+				.defineHiddenClass(bytes, true);
+			return (Code) lookup.lookupClass()
+				.getDeclaredConstructor(Stmt.Function.class, Cell[].class)
+				.newInstance(declaration, emitter.cells.toArray(new Cell[0]));
+		} catch(Unsupported unsupported) {
+			return null;
+		} catch(ReflectiveOperationException | IllegalArgumentException | VerifyError | ClassFormatError error) {
+			//Bytecode the JVM won't take is a bug in the emitter. That shouldn't take the program down, the Interpreter
+			//can still run it, but it shouldn't go unnoticed either.
+			System.err.println("Couldn't compile " + declaration.name.lexeme + ": " + error);
+			return null;
+		}
+	}
+
+	/***
+	 * Thrown while compiling when the function uses something the Jit doesn't handle.
+	 */
+	private static class Unsupported extends RuntimeException
+	{
+		private static final long serialVersionUID = 1L;
+
+		Unsupported()
+		{
+			super(null, null, false, false);
+		}
+	}
+
+	//The types values can have in compiled code.
+	private enum Type{
+		NUMBER,
+		BOOLEAN
+	}
+
+	/***
+	 * A local in compiled code: its type and its index in the JVM's locals.
+	 */
+	private static class Local
+	{
+		final Type type;
+		final int index;
+
+		Local(Type type, int index)
+		{
+			this.type = type;
+			this.index = index;
+		}
+	}
+
+	/***
+	 * Writes the class for one function. The visits return the type of the value they leave on the stack.
+	 */
+	private static class Emitter implements Expr.Visitor<Type>, Stmt.Visitor<Void>
+	{
+		//JVM opcodes.
+		private static final int ICONST_0 = 0x03, ICONST_1 = 0x04, DCONST_0 = 0x0e;
+		private static final int SIPUSH = 0x11, LDC2_W = 0x14;
+		private static final int ILOAD = 0x15, DLOAD = 0x18;
+		private static final int ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, ALOAD_2 = 0x2c;
+		private static final int DALOAD = 0x31, AALOAD = 0x32, ISTORE = 0x36, DSTORE = 0x39;
+		private static final int POP = 0x57, POP2 = 0x58, DUP = 0x59, DUP_X1 = 0x5a, DUP2 = 0x5c;
+		private static final int IADD = 0x60, ISUB = 0x64;
+		private static final int DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DDIV = 0x6f, DNEG = 0x77;
+		private static final int IXOR = 0x82, DCMPL = 0x97, DCMPG = 0x98;
+		private static final int IFEQ = 0x99, IFNE = 0x9a, IFLT = 0x9b, IFGE = 0x9c;
+		private static final int IFGT = 0x9d, IFLE = 0x9e, IF_ICMPNE = 0xa0, IF_ICMPLE = 0xa4, GOTO = 0xa7;
+		private static final int DRETURN = 0xaf, RETURN = 0xb1;
+		private static final int GETSTATIC = 0xb2, GETFIELD = 0xb4, PUTFIELD = 0xb5, INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7;
+		private static final int INVOKESTATIC = 0xb8, ATHROW = 0xbf;
+
+		private final Stmt.Function declaration;
+		private final Environment globals;
+		private final ClassFile file;
+		private final String runDescriptor;
+		private ClassFile.Code code;
+		//The start of run()'s body, where tail calls to itself jump.
+		private final ClassFile.Label top = new ClassFile.Label();
+
+		final List<Cell> cells = new ArrayList<>();
+		//The function's locals by their slot in its frame, the parameters first. A block's slots get
+		//reused by the next block, so a slot holds the local declared there last.
+		private final Local[] locals;
+		private int nextLocal = 1;
+
+		Emitter(Stmt.Function declaration, Environment globals)
+		{
+			this.declaration = declaration;
+			this.globals = globals;
+			locals = new Local[declaration.frameSize];
+			file = new ClassFile("JavaInterpreter/Milk/Compiled", CODE);
+
+			StringBuilder descriptor = new StringBuilder("(");
+			for(int i = 0; i < declaration.params.size(); i++)
+			{
+				descriptor.append('D');
+			}
+			runDescriptor = descriptor.append(")D").toString();
+		}
+
+		/***
+		 * @return the class file with the constructor, invoke() and run().
+		 */
+		byte[] emit()
+		{
+			String constructor = "(LJavaInterpreter/Milk/Stmt$Function;[L" + CELL + ";)V";
+			code = file.method(0, "<init>", constructor);
+			code.op(ALOAD_0, 1);
+			code.op(ALOAD_1, 1);
+			code.op(ALOAD_2, 1);
+			code.op2(INVOKESPECIAL, file.methodRef(CODE, "<init>", constructor), -3);
+			code.op(RETURN, 0);
+			code.maxLocals = 3;
+
+			int arity = declaration.params.size();
+			code = file.method(0, "invoke", "([D)D");
+			code.op(ALOAD_0, 1);
+			for(int i = 0; i < arity; i++)
+			{
+				code.op(ALOAD_1, 1);
+				push(i);
+				code.op(DALOAD, 0);
+			}
+			code.op2(INVOKEVIRTUAL, file.methodRef("JavaInterpreter/Milk/Compiled",
+				"run", runDescriptor), 1 - 2 * arity);
+			code.op(DRETURN, -2);
+			code.maxLocals = 2;
+
+			code = file.method(0, "run", runDescriptor);
+			for(int i = 0; i < arity; i++)
+			{
+				locals[i] = allocate(Type.NUMBER);
+			}
+
+			//depth++, too deep goes back to the Interpreter to report it.
+			code.op(ALOAD_0, 1);
+			code.op(DUP, 1);
+			code.op2(GETFIELD, file.fieldRef(CODE, "depth", "I"), 0);
+			code.op(ICONST_1, 1);
+			code.op(IADD, -1);
+			code.op(DUP_X1, 1);
+			code.op2(PUTFIELD, file.fieldRef(CODE, "depth", "I"), -2);
+			code.op2(GETSTATIC, file.fieldRef("JavaInterpreter/Milk/Milk", "maxDepth", "I"), 1);
+			guard(IF_ICMPLE, -2);
+			code.place(top);
+			for(Stmt statement : declaration.body)
+			{
+				statement.accept(this);
+			}
+			//Falling off the end returns nil, which isn't a number.
+			deopt();
+			code.maxLocals = nextLocal;
+
+			return file.toBytes();
+		}
+
+		private Local allocate(Type type)
+		{
+			Local local = new Local(type, nextLocal);
+			nextLocal += type == Type.NUMBER ? 2 : 1;
+			//The loads and stores only take a one byte index.
+			if(nextLocal > 255)
+				throw new Unsupported();
+			return local;
+		}
+
+		private void push(int value)
+		{
+			if(value > Short.MAX_VALUE)
+				throw new Unsupported();
+			code.op2(SIPUSH, value, 1);
+		}
+
+		/***
+		 * Throws the Deopt, handing the call back to the Interpreter.
+		 */
+		private void deopt()
+		{
+			code.op2(INVOKESTATIC, file.methodRef("JavaInterpreter/Milk/Jit", "deopt",
+				"()L" + DEOPT + ";"), 1);
+			code.op(ATHROW, -1);
+		}
+
+		/***
+		 * Deopts unless the jump is taken.
+		 * @param effect how much the jump shrinks the stack, -1 for a single value test.
+		 */
+		private void guard(int opcode, int effect)
+		{
+			ClassFile.Label ok = new ClassFile.Label();
+			code.jump(opcode, ok, effect);
+			deopt();
+			code.place(ok);
+		}
+
+		private Type expression(Expr expr)
+		{
+			return expr.accept(this);
+		}
+
+		private void expect(Type type, Expr expr)
+		{
+			if(expression(expr) != type)
+				throw new Unsupported();
+		}
+
+		/***
+		 * Turns a comparison's result into a boolean: 1 unless the jump is taken.
+		 */
+		private Type bool(int opcode)
+		{
+			ClassFile.Label no = new ClassFile.Label();
+			ClassFile.Label end = new ClassFile.Label();
+			code.jump(opcode, no, -1);
+			code.op(ICONST_1, 1);
+			code.jump(GOTO, end, 0);
+			code.place(no);
+			code.op(ICONST_0, 1);
+			code.place(end);
+			return Type.BOOLEAN;
+		}
+
+		private Local local(int slot, boolean upvalue)
+		{
+			//A local of some enclosing function.
+			if(upvalue)
+				throw new Unsupported();
+			return locals[slot];
+		}
+
+		/***
+		 * Loads a global's cell: this.cells[index].
+		 */
+		private void cell(Symbol name)
+		{
+			Cell cell = globals.cell(name);
+			int index = cells.indexOf(cell);
+			if(index == -1)
+			{
+				index = cells.size();
+				cells.add(cell);
+			}
+			code.op(ALOAD_0, 1);
+			code.op2(GETFIELD, file.fieldRef(CODE, "cells", "[L" + CELL + ";"), 0);
+			push(index);
+			code.op(AALOAD, -1);
+			code.op2(GETFIELD, file.fieldRef(CELL, "value", "Ljava/lang/Object;"), 0);
+		}
+
+		private void load(Local local)
+		{
+			if(local.type == Type.NUMBER)
+				code.op1(DLOAD, local.index, 2);
+			else
+				code.op1(ILOAD, local.index, 1);
+		}
+
+		private void store(Local local)
+		{
+			if(local.type == Type.NUMBER)
+				code.op1(DSTORE, local.index, -2);
+			else
+				code.op1(ISTORE, local.index, -1);
+		}
+
+		@Override
+		public Void visitBlockStmt(Stmt.Block stmt)
+		{
+			for(Stmt statement : stmt.statements)
+			{
+				statement.accept(this);
+			}
+			return null;
+		}
+
+		@Override
+		public Void visitClassStmt(Stmt.Class stmt)
+		{
+			throw new Unsupported();
+		}
+
+		@Override
+		public Void visitExpressionStmt(Stmt.Expression stmt)
+		{
+			if(expression(stmt.expression) == Type.NUMBER)
+				code.op(POP2, -2);
+			else
+				code.op(POP, -1);
+			return null;
+		}
+
+		@Override
+		public Void visitForStmt(Stmt.For stmt)
+		{
+			if(stmt.initializer != null)
+				stmt.initializer.accept(this);
+
+			ClassFile.Label start = new ClassFile.Label();
+			ClassFile.Label end = new ClassFile.Label();
+			code.place(start);
+			expect(Type.BOOLEAN, stmt.condition);
+			code.jump(IFEQ, end, -1);
+			stmt.body.accept(this);
+			if(stmt.increment != null)
+			{
+				if(expression(stmt.increment) == Type.NUMBER)
+					code.op(POP2, -2);
+				else
+					code.op(POP, -1);
+			}
+			code.jump(GOTO, start, 0);
+			code.place(end);
+			return null;
+		}
+
+		@Override
+		public Void visitFunctionStmt(Stmt.Function stmt)
+		{
+			throw new Unsupported();
+		}
+
+		@Override
+		public Void visitIfStmt(Stmt.If stmt)
+		{
+			ClassFile.Label otherwise = new ClassFile.Label();
+			ClassFile.Label end = new ClassFile.Label();
+			expect(Type.BOOLEAN, stmt.condition);
+			code.jump(IFEQ, otherwise, -1);
+			stmt.thenBranch.accept(this);
+			code.jump(GOTO, end, 0);
+			code.place(otherwise);
+			if(stmt.elseBranch != null)
+				stmt.elseBranch.accept(this);
+			code.place(end);
+			return null;
+		}
+
+		@Override
+		public Void visitPrintStmt(Stmt.Print stmt)
+		{
+			throw new Unsupported();
+		}
+
+		@Override
+		public Void visitReturnStmt(Stmt.Return stmt)
+		{
+			if(stmt.value == null)
+				throw new Unsupported();
+
+			//Calling itself in tail position is a jump back to the top with the new arguments.
+			if(stmt.tailCall)
+			{
+				Expr.Call call = (Expr.Call) stmt.value;
+				self(call);
+				for(Expr argument : call.arguments)
+				{
+					expect(Type.NUMBER, argument);
+				}
+				for(int i = call.arguments.size() - 1; i >= 0; i--)
+				{
+					store(locals[i]);
+				}
+				code.jump(GOTO, top, 0);
+				return null;
+			}
+
+			expect(Type.NUMBER, stmt.value);
+			//depth--
+			code.op(ALOAD_0, 1);
+			code.op(DUP, 1);
+			code.op2(GETFIELD, file.fieldRef(CODE, "depth", "I"), 0);
+			code.op(ICONST_1, 1);
+			code.op(ISUB, -1);
+			code.op2(PUTFIELD, file.fieldRef(CODE, "depth", "I"), -2);
+			code.op(DRETURN, -2);
+			return null;
+		}
+
+		@Override
+		public Void visitVarStmt(Stmt.Var stmt)
+		{
+			//A variable without an initializer is nil.
+			if(stmt.initializer == null)
+				throw new Unsupported();
+			Local local = allocate(expression(stmt.initializer));
+			store(local);
+			locals[stmt.slot] = local;
+			return null;
+		}
+
+		@Override
+		public Void visitWhileStmt(Stmt.While stmt)
+		{
+			ClassFile.Label start = new ClassFile.Label();
+			ClassFile.Label end = new ClassFile.Label();
+			code.place(start);
+			expect(Type.BOOLEAN, stmt.condition);
+			code.jump(IFEQ, end, -1);
+			stmt.body.accept(this);
+			code.jump(GOTO, start, 0);
+			code.place(end);
+			return null;
+		}
+
+		@Override
+		public Type visitAssignExpr(Expr.Assign expr)
+		{
+			//Assigning a global would be seen from outside.
+			if(expr.slot == -1)
+				throw new Unsupported();
+
+			Local local = local(expr.slot, expr.upvalue);
+			expect(local.type, expr.value);
+			if(local.type == Type.NUMBER)
+				code.op(DUP2, 2);
+			else
+				code.op(DUP, 1);
+			store(local);
+			return local.type;
+		}
+
+		@Override
+		public Type visitBinaryExpr(Expr.Binary expr)
+		{
+			Type left = expression(expr.left);
+			Type right = expression(expr.right);
+
+			switch(expr.operator.type)
+			{
+				case EQUAL_EQUAL:
+				case BANG_EQUAL:
+					int equal = expr.operator.type == TokenType.EQUAL_EQUAL ? IFNE : IFEQ;
+					if(left == Type.BOOLEAN && right == Type.BOOLEAN)
+					{
+						ClassFile.Label no = new ClassFile.Label();
+						ClassFile.Label end = new ClassFile.Label();
+						code.jump(IF_ICMPNE, no, -2);
+						code.op(equal == IFNE ? ICONST_1 : ICONST_0, 1);
+						code.jump(GOTO, end, 0);
+						code.place(no);
+						code.op(equal == IFNE ? ICONST_0 : ICONST_1, 1);
+						code.place(end);
+						return Type.BOOLEAN;
+					}
+					if(left != Type.NUMBER || right != Type.NUMBER)
+						throw new Unsupported();
+					//Double.compare() is 0 exactly when Double.equals() is true, like isEqual().
+					code.op2(INVOKESTATIC, file.methodRef("java/lang/Double", "compare",
+						"(DD)I"), -3);
+					return bool(equal);
+			}
+
+			if(left != Type.NUMBER || right != Type.NUMBER)
+				throw new Unsupported();
+
+			switch(expr.operator.type)
+			{
+				case GREATER:
+					code.op(DCMPL, -3);
+					return bool(IFLE);
+				case GREATER_EQUAL:
+					code.op(DCMPL, -3);
+					return bool(IFLT);
+				case LESS:
+					code.op(DCMPG, -3);
+					return bool(IFGE);
+				case LESS_EQUAL:
+					code.op(DCMPG, -3);
+					return bool(IFGT);
+				case MINUS:
+					code.op(DSUB, -2);
+					return Type.NUMBER;
+				case PLUS:
+					code.op(DADD, -2);
+					return Type.NUMBER;
+				case STAR:
+					code.op(DMUL, -2);
+					return Type.NUMBER;
+				case SLASH:
+					//Dividing by zero gives the Interpreter's 0.
+					code.op(DUP2, 2);
+					code.op(DCONST_0, 2);
+					code.op(DCMPL, -3);
+					guard(IFNE, -1);
+					code.op(DDIV, -2);
+					return Type.NUMBER;
+			}
+			throw new Unsupported();
+		}
+
+		/***
+		 * Checks that expr calls the function itself, and guards that the global still holds it.
+		 */
+		private void self(Expr.Call expr)
+		{
+			if(!(expr.callee instanceof Expr.Variable))
+				throw new Unsupported();
+			Expr.Variable callee = (Expr.Variable) expr.callee;
+			if(callee.slot != -1 || callee.name.symbol != declaration.name.symbol ||
+				expr.arguments.size() != declaration.params.size())
+			{
+				throw new Unsupported();
+			}
+
+			code.op(ALOAD_0, 1);
+			cell(callee.name.symbol);
+			code.op2(INVOKEVIRTUAL, file.methodRef(CODE, "isSelf",
+				"(Ljava/lang/Object;)Z"), -1);
+			guard(IFNE, -1);
+		}
+
+		/***
+		 * Only calls to the function itself.
+		 */
+		@Override
+		public Type visitCallExpr(Expr.Call expr)
+		{
+			self(expr);
+			code.op(ALOAD_0, 1);
+			for(Expr argument : expr.arguments)
+			{
+				expect(Type.NUMBER, argument);
+			}
+			code.op2(INVOKEVIRTUAL, file.methodRef("JavaInterpreter/Milk/Compiled",
+				"run", runDescriptor), 1 - 2 * expr.arguments.size());
+			return Type.NUMBER;
+		}
+
+		@Override
+		public Type visitGetExpr(Expr.Get expr)
+		{
+			throw new Unsupported();
+		}
+
+		@Override
+		public Type visitGroupingExpr(Expr.Grouping expr)
+		{
+			return expression(expr.expression);
+		}
+
+		@Override
+		public Type visitLiteralExpr(Expr.Literal expr)
+		{
+			if(Numbers.isNumber(expr.value))
+			{
+				code.op2(LDC2_W, file.doubleConstant(Numbers.toDouble(expr.value)), 2);
+				return Type.NUMBER;
+			}
+			if(expr.value instanceof Boolean)
+			{
+				code.op((boolean) expr.value ? ICONST_1 : ICONST_0, 1);
+				return Type.BOOLEAN;
+			}
+			throw new Unsupported();
+		}
+
+		@Override
+		public Type visitLogicalExpr(Expr.Logical expr)
+		{
+			ClassFile.Label end = new ClassFile.Label();
+			expect(Type.BOOLEAN, expr.left);
+			code.op(DUP, 1);
+			code.jump(expr.operator.type == TokenType.OR ? IFNE : IFEQ, end, -1);
+			code.op(POP, -1);
+			expect(Type.BOOLEAN, expr.right);
+			code.place(end);
+			return Type.BOOLEAN;
+		}
+
+		@Override
+		public Type visitSetExpr(Expr.Set expr)
+		{
+			throw new Unsupported();
+		}
+
+		@Override
+		public Type visitSuperExpr(Expr.Super expr)
+		{
+			throw new Unsupported();
+		}
+
+		@Override
+		public Type visitThisExpr(Expr.This expr)
+		{
+			throw new Unsupported();
+		}
+
+		@Override
+		public Type visitUnaryExpr(Expr.Unary expr)
+		{
+			if(expr.operator.type == TokenType.BANG)
+			{
+				expect(Type.BOOLEAN, expr.right);
+				code.op(ICONST_1, 1);
+				code.op(IXOR, -1);
+				return Type.BOOLEAN;
+			}
+			expect(Type.NUMBER, expr.right);
+			code.op(DNEG, 0);
+			return Type.NUMBER;
+		}
+
+		/***
+		 * Globals have to hold a number, checked every time they're read.
+		 */
+		@Override
+		public Type visitVariableExpr(Expr.Variable expr)
+		{
+			if(expr.slot != -1)
+			{
+				Local local = local(expr.slot, expr.upvalue);
+				load(local);
+				return local.type;
+			}
+
+			cell(expr.name.symbol);
+			code.op(DUP, 1);
+			code.op2(INVOKESTATIC, file.methodRef(NUMBERS, "isNumber",
+				"(Ljava/lang/Object;)Z"), 0);
+			guard(IFNE, -1);
+			code.op2(INVOKESTATIC, file.methodRef(NUMBERS, "toDouble",
+				"(Ljava/lang/Object;)D"), 1);
+			return Type.NUMBER;
+		}
+	}
+}
@@ -3,9 +3,11 @@ package JavaInterpreter.Milk;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.List;
 /*** 
  The interpreter, currently in its baby phase.
@@ -15,42 +17,139 @@ public class Milk
 {   
 	// hadError ensures that we don't try excuting code when there is a known error
 	private static final Interpreter interpreter = new Interpreter();
+	//The bytecode VM. Only created when --vm asks for it, otherwise the tree-walker runs the code.
+	private static VM vm = null;
+	//The node engine. Only created when --nodes asks for it.
+	private static NodeCompiler nodes = null;
 	//Used to system.exit in runFile()w]
 	static boolean hadError = false;
 	static boolean hadRuntimeError = false;
+	//Set with --parallel, big files get scanned and parsed in chunks on every core. See ParallelParser.
+	private static boolean parallel = false;
+	//While a thread parses a chunk of a file its errors go here instead of being printed, so they can come out in order.
+	static final ThreadLocal<List<String>> errors = new ThreadLocal<>();
+	//How deep Milk calls can nest before it's a "Stack overflow." error. Set with --max-depth.
+	private static final int DEFAULT_DEPTH = 65536;
+	static int maxDepth = DEFAULT_DEPTH;
+	//Java stack given to the code for each level of calls, it's a lot more than a call normally takes.
+	private static final long STACK_PER_CALL = 4096;
+	//Deepest --max-depth the tree-walker and the nodes take, that's a 1GB stack. The VM takes any.
+	private static final int MAX_DEPTH = 1 << 18;
+	//The Java stack the code runs with, set in main().
+	static long stack = STACK_PER_CALL * DEFAULT_DEPTH;
 	/*** 
 	* Baby steps for now.
 	* Main method
 	* What else to say. Look below for more deets lol.
 	*/
-	public static void main(String[] args) throws IOException
+	public static void main(String[] args) throws IOException, InterruptedException
 	{
-		if(args.length>1)
+		if(args.length > 0 && args[0].equals("--vm"))
 		{
-			System.out.println("Usage: jmilk [script]");
-			System.exit(64);
+			vm = new VM();
+			args = Arrays.copyOfRange(args, 1, args.length);
 		}
-		else if(args.length == 1)
+		else if(args.length > 0 && args[0].equals("--nodes"))
 		{
-			runFile(args[0]);
+			nodes = new NodeCompiler();
+			args = Arrays.copyOfRange(args, 1, args.length);
 		}
-		else
+
+		if(args.length > 0 && args[0].equals("--parallel"))
+		{
+			parallel = true;
+			args = Arrays.copyOfRange(args, 1, args.length);
+		}
+
+		if(args.length > 1 && args[0].equals("--max-depth"))
 		{
-			runPrompt();
+			maxDepth = depth(args[1]);
+			args = Arrays.copyOfRange(args, 2, args.length);
+		}
+
+		if(args.length>1)
+		{
+			usage();
+		}
+
+		//The tree-walker and the nodes make a Java call (several really) for every Milk call,
+		//so the code runs on its own thread with a stack big enough for maxDepth calls.
+		//The VM keeps its calls on its own stack, it just gets what the default depth would for parsing.
+		stack = STACK_PER_CALL * (vm != null ? DEFAULT_DEPTH : maxDepth);
+		String[] script = args;
+		Throwable[] failure = new Throwable[1];
+		Thread thread = new Thread(null, () -> {
+			try{
+				if(script.length == 1)
+					runFile(script[0]);
+				else
+					runPrompt();
+			} catch(Throwable error) {
+				failure[0] = error;
+			}
+		}, "milk", stack);
+		thread.start();
+		thread.join();
+
+		//Anything that went wrong on the thread goes wrong here instead, so the exit code is what it would've been.
+		if(failure[0] instanceof IOException)
+			throw (IOException) failure[0];
+		if(failure[0] instanceof InterruptedException)
+			throw (InterruptedException) failure[0];
+		if(failure[0] instanceof RuntimeException)
+			throw (RuntimeException) failure[0];
+		if(failure[0] instanceof Error)
+			throw (Error) failure[0];
+	}
+
+	/***
+	 * @return the --max-depth argument, it has to be a positive number. No more than MAX_DEPTH unless its for the VM.
+	 */
+	private static int depth(String argument)
+	{
+		try{
+			int depth = Integer.parseInt(argument);
+			if(depth > MAX_DEPTH && vm == null)
+			{
+				System.out.println("--max-depth can be at most " + MAX_DEPTH + ", unless it's with --vm.");
+				usage();
+			}
+			if(depth > 0)
+				return depth;
+		} catch(NumberFormatException error) {
+			//Falls through to the usage message.
 		}
+		usage();
+		return 0;
+	}
+
+	private static void usage()
+	{
+		System.out.println("Usage: jmilk [--vm | --nodes] [--parallel] [--max-depth calls] [script]");
+		System.exit(64);
 	}
 
 	/*** 
-	* Creates an array of byte that is based off a file path, path.; 
-	* Then calls run on the newly created array.
+	* Opens the file at path and calls run on it, the scanner reads it bit by bit as it goes.
+	* With --parallel it's read in all at once instead, it has to be to cut it into chunks.
 	* If there is an error, exit ASAP.
 	* 
 	* @param path User-given path to the text file that contains the Milk code.
 	*/
-	private static void runFile(String path) throws IOException 
+	private static void runFile(String path) throws IOException, InterruptedException
 	{
-		byte[] bytes = Files.readAllBytes(Paths.get(path));
-		run(new String (bytes, Charset.defaultCharset()));
+		if(parallel)
+		{
+			byte[] bytes = Files.readAllBytes(Paths.get(path));
+			run(ParallelParser.parse(new String(bytes, Charset.defaultCharset())));
+		}
+		else
+		{
+			try(Reader reader = new InputStreamReader(Files.newInputStream(Paths.get(path)), Charset.defaultCharset()))
+			{
+				run(new Parser(new Scanner(reader)).parse());
+			}
+		}
 		if(hadError)
 		{
 			System.exit(65);
@@ -96,23 +195,38 @@ public class Milk
 	*/
 	private static void run(String source)
 	{
-		Scanner scanner = new Scanner(source);
-		List<Token> tokens = scanner.scanTokens();
-		Parser parser = new Parser(tokens);
-		List<Stmt> statements = parser.parse();
+		run(new Parser(new Scanner(source)).parse());
+	}
 
+	private static void run(List<Stmt> statements)
+	{
 		//Stop if there's a syntax error.
 
 		if(hadError)
 			return;
 
-		Resolver resolver =new Resolver(interpreter);
+		Resolver resolver =new Resolver();
 		resolver.resolve(statements);
 
 		if(hadError)
 			return;
+
+		if(vm != null)
+		{
+			VM.Function script = new Compiler(vm.globals).compile(statements);
+			if(hadError)
+				return;
+			vm.interpret(script);
+			return;
+		}
+
+		if(nodes != null)
+		{
+			nodes.interpret(statements, resolver.frameSize());
+			return;
+		}
 		
-		interpreter.interpret(statements);
+		interpreter.interpret(statements, resolver.frameSize());
 	}
 
 	/*** 
@@ -137,7 +251,7 @@ public class Milk
 	static void runtimeError(RuntimeError error)
 	{
 		System.err.println(error.getMessage() + 
-			"\n[line " + error.token.line + "]");
+			"\n[line " + error.line + "]");
 		hadRuntimeError = true;
 	}
 	/*** 
@@ -148,7 +262,21 @@ public class Milk
 	*/
 	private static void report(int line, String where, String message)
 	{
-		System.err.println("[line " + line + "] Error" + where + ":" + message);
+		report("[line " + line + "] Error" + where + ":" + message);
+	}
+
+	/***
+	 * Prints the error, unless this thread is parsing a chunk of a file. Then it's kept for ParallelParser to report.
+	 */
+	static void report(String error)
+	{
+		List<String> kept = errors.get();
+		if(kept != null)
+		{
+			kept.add(error);
+			return;
+		}
+		System.err.println(error);
 		hadError = true;
 	}
 
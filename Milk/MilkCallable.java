@@ -1,9 +1,41 @@
 package JavaInterpreter.Milk;
 
-import java.util.List;
-
+/***
+ * Anything Milk code can call.
+ *
+ * call() takes the arguments as an array. Calls with up to 4 arguments go through
+ * call0() to call4() instead, so callers don't have to put the arguments in an array first.
+ * By default those just make the array, callables that can do better override them.
+ */
 interface MilkCallable
 {
+	Object[] NO_ARGUMENTS = new Object[0];
+
 	int arity();
-	Object call(Interpreter interpreter, List<Object> arguments);
-}
\ No newline at end of file
+	Object call(Interpreter interpreter, Object[] arguments);
+
+	default Object call0(Interpreter interpreter)
+	{
+		return call(interpreter, NO_ARGUMENTS);
+	}
+
+	default Object call1(Interpreter interpreter, Object a)
+	{
+		return call(interpreter, new Object[]{a});
+	}
+
+	default Object call2(Interpreter interpreter, Object a, Object b)
+	{
+		return call(interpreter, new Object[]{a, b});
+	}
+
+	default Object call3(Interpreter interpreter, Object a, Object b, Object c)
+	{
+		return call(interpreter, new Object[]{a, b, c});
+	}
+
+	default Object call4(Interpreter interpreter, Object a, Object b, Object c, Object d)
+	{
+		return call(interpreter, new Object[]{a, b, c, d});
+	}
+}
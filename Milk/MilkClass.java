@@ -1,6 +1,7 @@
 package JavaInterpreter.Milk;
 
-import java.util.List;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 /***
  * Runtime Representation of a Class.
@@ -9,27 +10,41 @@ class MilkClass implements MilkCallable
 {
 	final String name;
 	final MilkClass superclass;
-	private final Map<String, MilkFunction> methods;
+	//The class's own methods. Only these count for init when the class is called.
+	private final Map<Symbol, MilkFunction> methods;
+	//Every method instances of the class have, inherited ones included.
+	private final Map<Symbol, MilkFunction> table;
+	//Looked up once, calling the class needs them every time.
+	private final MilkFunction initializer;
+	private final int arity;
 
 	MilkClass(String name, MilkClass superclass,
-		Map<String, MilkFunction> methods)
+		Map<Symbol, MilkFunction> methods)
 	{
 		this.name = name;
 		this.methods = methods;
 		this.superclass = superclass;
+
+		//Copy the superclass's table down and put our own methods over it,
+		//so finding a method never has to walk up the chain.
+		Map<Symbol, MilkFunction> table = new HashMap<>();
+		if(superclass != null)
+			table.putAll(superclass.table);
+		table.putAll(methods);
+		this.table = Collections.unmodifiableMap(table);
+
+		initializer = methods.get(Symbol.INIT);
+		arity = initializer == null ? 0 : initializer.arity();
 	}	
 	/***
-	 * 
+	 * Looks for a method in the class or its superclasses, with a single lookup in the flattened table.
+	 * super.method looks in the superclass's table, so it still finds the parent's version.
+	 * InlineCache remembers what this finds, whoever uses the method binds it.
+	 * @return the method, or null.
 	 */
-	MilkFunction findMethod(MilkInstance instance, String name)
+	MilkFunction findMethod(Symbol name)
 	{
-		if(methods.containsKey(name))
-			return methods.get(name).bind(instance);
-		if(superclass != null)
-		{
-			return superclass.findMethod(instance, name);
-		}
-		return null;
+		return table.get(name);
 	}
 
 	@Override
@@ -43,13 +58,25 @@ class MilkClass implements MilkCallable
 	 * When a class is called, it instantiates a new class and returns it.
 	 */
 	@Override
-	public Object call(Interpreter interpreter, List<Object> arguments)
+	public Object call(Interpreter interpreter, Object[] arguments)
+	{
+		MilkInstance instance = new MilkInstance(this);
+		if(initializer != null)
+		{
+			initializer.callMethod(interpreter, instance, arguments);
+		}
+
+		return instance;
+	}
+
+	//No arguments is the most common way to make an instance.
+	@Override
+	public Object call0(Interpreter interpreter)
 	{
 		MilkInstance instance = new MilkInstance(this);
-		MilkFunction intializer = methods.get("init");
-		if(intializer != null)
+		if(initializer != null)
 		{
-			intializer.bind(instance).call(interpreter, arguments);
+			initializer.execute(interpreter, initializer.frame(instance));
 		}
 
 		return instance;
@@ -61,9 +88,6 @@ class MilkClass implements MilkCallable
 	@Override
 	public int arity()
 	{
-		 MilkFunction initializer = methods.get("init");
-		 if(initializer == null)
-		 	return 0;
-		 return initializer.arity();
+		return arity;
 	}
 }
\ No newline at end of file
@@ -1,6 +1,5 @@
 package JavaInterpreter.Milk;
 
-import java.util.List;
 /***
  * Class that is similar to Stmt.Function.
  * We need MilkFunction because:
@@ -9,23 +8,32 @@ import java.util.List;
  */
 class MilkFunction implements MilkCallable
 {
-	private final Stmt.Function declaration;
-	private final Environment closure;
-	private final boolean isInitializer;
+	final Stmt.Function declaration;
+	//The cells of the variables it uses from the functions around it. Just those, not their whole frames.
+	final Cell[] upvalues;
+	final boolean isInitializer;
+	private final int arity;
 
-	MilkFunction(Stmt.Function declaration, Environment closure,
+	//Frames of finished calls are kept on the declaration (pool and pooled) and handed out again by frame().
+	//Every closure made from it shares them. A frame is done with once its call returns,
+	//closures only keep the cells of what they capture, so every frame can come back.
+	static final int POOL_SIZE = 8;
+
+	MilkFunction(Stmt.Function declaration, Cell[] upvalues,
 				 boolean isInitializer)
 	{
 		this.isInitializer = isInitializer;
 		this.declaration = declaration;
-		this.closure = closure;
+		this.upvalues = upvalues;
+		this.arity = declaration.params.size();
 	}
 
-	MilkFunction bind(MilkInstance instance)
+	/***
+	 * Ties the method to an instance, for when the method is used as a value instead of being called right away.
+	 */
+	MilkCallable bind(MilkInstance instance)
 	{
-		Environment environment = new Environment(closure);
-		environment.define("this", instance);
-		return new MilkFunction(declaration, environment, isInitializer);
+		return new BoundMethod(instance, this);
 	}
 
 	/***
@@ -36,32 +44,180 @@ class MilkFunction implements MilkCallable
 	 * @return 
 	 */
 	@Override
-	public Object call(Interpreter interpreter, List<Object> arguments)
+	public Object call(Interpreter interpreter, Object[] arguments)
+	{
+		//Hot numeric functions run as JVM bytecode, see Jit.
+		if(usesJit())
+		{
+			Object result = Jit.call(this, interpreter, arguments);
+			if(result != Jit.NOT_COMPILED)
+				return result;
+		}
+
+		Environment environment = frame();
+		for(Object argument : arguments)
+		{
+			environment.define(argument);
+		}
+		return execute(interpreter, environment);
+	}
+
+	//The fixed arity calls put the arguments straight into the environment.
+	//Until the Jit has made up its mind about the function they take the normal path.
+	@Override
+	public Object call0(Interpreter interpreter)
+	{
+		if(usesJit())
+			return call(interpreter, NO_ARGUMENTS);
+		return execute(interpreter, frame());
+	}
+
+	@Override
+	public Object call1(Interpreter interpreter, Object a)
+	{
+		if(usesJit())
+			return call(interpreter, new Object[]{a});
+		Environment environment = frame();
+		environment.define(a);
+		return execute(interpreter, environment);
+	}
+
+	@Override
+	public Object call2(Interpreter interpreter, Object a, Object b)
+	{
+		if(usesJit())
+			return call(interpreter, new Object[]{a, b});
+		Environment environment = frame();
+		environment.define(a);
+		environment.define(b);
+		return execute(interpreter, environment);
+	}
+
+	@Override
+	public Object call3(Interpreter interpreter, Object a, Object b, Object c)
+	{
+		if(usesJit())
+			return call(interpreter, new Object[]{a, b, c});
+		Environment environment = frame();
+		environment.define(a);
+		environment.define(b);
+		environment.define(c);
+		return execute(interpreter, environment);
+	}
+
+	@Override
+	public Object call4(Interpreter interpreter, Object a, Object b, Object c, Object d)
+	{
+		if(usesJit())
+			return call(interpreter, new Object[]{a, b, c, d});
+		Environment environment = frame();
+		environment.define(a);
+		environment.define(b);
+		environment.define(c);
+		environment.define(d);
+		return execute(interpreter, environment);
+	}
+
+	/***
+	 * Whether calls go through the Jit: until it gives up on the function, or for good once its compiled.
+	 */
+	boolean usesJit()
+	{
+		return !declaration.uncompilable;
+	}
+
+	/***
+	 * @return an environment for a call, the arguments get defined into it. A pooled one if there is one.
+	 */
+	Environment frame()
+	{
+		Stmt.Function declaration = this.declaration;
+		if(declaration.pooled > 0)
+		{
+			Environment frame = declaration.pool[--declaration.pooled];
+			frame.reuse(upvalues);
+			return frame;
+		}
+		return new Environment(declaration.frameSize, upvalues);
+	}
+
+	/***
+	 * Takes back the frame of a call that finished. It gets emptied, so it doesn't keep its values alive.
+	 * Recursion can have more frames out than the pool holds, the extra ones are left to the garbage collector.
+	 */
+	void release(Environment frame)
+	{
+		Stmt.Function declaration = this.declaration;
+		if(declaration.pool == null)
+			declaration.pool = new Environment[POOL_SIZE];
+		if(declaration.pooled < POOL_SIZE)
+		{
+			frame.clear();
+			declaration.pool[declaration.pooled++] = frame;
+		}
+	}
+
+	/***
+	 * @return a new environment for calling the function as a method of receiver.
+	 * The receiver is "this", which is the first slot of a method's environment. The arguments come after it.
+	 */
+	Environment frame(MilkInstance receiver)
+	{
+		Environment environment = frame();
+		environment.define(receiver);
+		return environment;
+	}
+
+	/***
+	 * Calls the function as a method of receiver.
+	 */
+	Object callMethod(Interpreter interpreter, MilkInstance receiver,
+		Object[] arguments)
 	{
-		Environment environment = new Environment(closure);
-		for(int i = 0; i < declaration.params.size(); i++)
+		Environment environment = frame(receiver);
+		for(Object argument : arguments)
 		{
-			environment.define(declaration.params.get(i).lexeme, arguments.get(i)); 
+			environment.define(argument);
 		}
-	
-		try{
-			interpreter.executeBlock(declaration.body, environment);
-		} catch(Return returnValue) {
-			if(isInitializer)
-				return closure.getAt(0,"this");
+		return execute(interpreter, environment);
+	}
+
+	/***
+	 * Runs the body in environment, which already holds the arguments. The ones a closure captures go in cells first.
+	 * A call in tail position comes back as TAIL_CALL, and that function runs here next instead of
+	 * nesting another Java call, so tail recursion doesn't use up the stack.
+	 * The frames go back to their functions once they're done.
+	 */
+	Object execute(Interpreter interpreter, Environment environment)
+	{
+		MilkFunction function = this;
+		Object value;
+		while(true)
+		{
+			environment.box(function.declaration.boxed);
+			interpreter.executeBlock(function.declaration.body, environment);
 			//This is how we return lmao.
-			return returnValue.value;
+			value = interpreter.finishCall();
+			if(value != Interpreter.TAIL_CALL)
+				break;
+
+			function.release(environment);
+			function = interpreter.tailFunction;
+			environment = interpreter.tailFrame;
+			interpreter.tailFunction = null;
+			interpreter.tailFrame = null;
 		}
 
-		if(isInitializer)
-			return closure.getAt(0, "this");
-		return null;
+		if(function.isInitializer)
+			value = environment.receiver();
+		function.release(environment);
+		return value;
 	}
 	//yeah yeah
 	@Override
 	public int arity()
 	{
-		return declaration.params.size();
+		return arity;
 	}
 
 	//clean toString.
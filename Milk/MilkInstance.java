@@ -1,15 +1,18 @@
 package JavaInterpreter.Milk;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 /***
  * Instance for when a class is called.
+ * Fields are kept in an array, the instance's Shape says which field is in which slot.
  * Its to string is so simple I'm not even making javadoc for it.
  */
 class MilkInstance
 {
+	private static final Object[] NO_FIELDS = new Object[0];
+
 	private MilkClass klass;
-	private final Map<String, Object> fields = new HashMap<>();
+	private Shape shape = Shape.EMPTY;
+	private Object[] values = NO_FIELDS;
 
 	MilkInstance(MilkClass klass)
 	{
@@ -24,26 +27,46 @@ class MilkInstance
 
 	/***
 	 * Used to look up a property of an instance.
+	 * The field's slot and the method are looked up through the cache of the Get doing the lookup.
 	 */
-	Object get(Token name)
+	Object get(Token name, InlineCache cache)
 	{
-		if(fields.containsKey(name.lexeme))
+		int slot = cache.slot(shape, name.symbol);
+		if(slot != -1)
 		{
-			return fields.get(name.lexeme);
+			return values[slot];
 		}
-		
-		//Look for a method with the name of the instance's class.
-		MilkFunction method = klass.findMethod(this, name.lexeme);
-		
-		if(method!=null)
-			return method;
-
-		throw new RuntimeError(name, "Undefined property '"+name.lexeme+"'.");		
+
+		MilkFunction method = cache.lookup(klass, name.symbol);
+		if(method != null)
+			return method.bind(this);
+
+		throw new RuntimeError(name, "Undefined property '"+name.lexeme+"'.");
+	}
+
+	/***
+	 * Finds the method a call like instance.name() calls, without binding it.
+	 * @return the method, or null if there isn't one or a field is in the way.
+	 */
+	MilkFunction method(Token name, InlineCache cache)
+	{
+		if(cache.slot(shape, name.symbol) != -1)
+			return null;
+		return cache.lookup(klass, name.symbol);
 	}
 
 	//Breathtaking how crazy this method is.
-	void set(Token name, Object value)
+	//A new field moves the instance to the next shape and goes in the slot after the others.
+	void set(Token name, Object value, InlineCache cache)
 	{
-		fields.put(name.lexeme, value);
+		int slot = cache.slot(shape, name.symbol);
+		if(slot == -1)
+		{
+			slot = shape.size;
+			shape = cache.transition(shape, name.symbol);
+			if(slot == values.length)
+				values = Arrays.copyOf(values, Math.max(4, slot * 2));
+		}
+		values[slot] = value;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,1594 @@
+package JavaInterpreter.Milk;
+
+import java.util.HashMap;
+import java.util.Map;
+/***
+ * Executable nodes: what the NodeCompiler turns the syntax tree into.
+ *
+ * Where the Interpreter visits an Expr and then switches on its operator every time,
+ * a node already is the one operation to do, with its children linked in.
+ * A < becomes a Less node, a local read becomes a LocalGet that knows its slot,
+ * a global read holds its cell. Running the program is simply calling execute() on the root.
+ *
+ * Statements are nodes too. They return null, unless a return statement ran:
+ * then they return the returned value (RETURNED_NIL for nil), and every statement
+ * around it hands that straight up to the function call. No exception needed to get out.
+ * A call in tail position returns a TailCall instead, and the function call runs it next.
+ */
+abstract class Node
+{
+	//What a return statement that returns nil returns, since null means the statement just finished.
+	static final Object RETURNED_NIL = new Object();
+
+	/***
+	 * What a call in tail position returns: the function to run next, with its arguments already in frame.
+	 * CompiledFunction.execute() runs it in place of the function that returned it, so the Java stack doesn't grow.
+	 */
+	static final class TailCall
+	{
+		final MilkFunction function;
+		final Environment frame;
+
+		TailCall(MilkFunction function, Environment frame)
+		{
+			this.function = function;
+			this.frame = frame;
+		}
+	}
+
+	/***
+	 * Runs the node in the given environment.
+	 * @return the node's value, for statements null or what a return statement returned.
+	 */
+	abstract Object execute(Environment environment);
+
+	static final class Constant extends Node
+	{
+		final Object value;
+
+		Constant(Object value)
+		{
+			this.value = value;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			return value;
+		}
+
+		@Override
+		double executeNumber(Environment environment)
+		{
+			return number(value);
+		}
+	}
+
+	static final class LocalGet extends Node
+	{
+		final int slot;
+
+		LocalGet(int slot)
+		{
+			this.slot = slot;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			return environment.getAt(slot);
+		}
+
+		@Override
+		double executeNumber(Environment environment)
+		{
+			return number(environment.getAt(slot));
+		}
+	}
+
+	/***
+	 * A local a closure captured, its slot holds the cell.
+	 */
+	static final class BoxedGet extends Node
+	{
+		final int slot;
+
+		BoxedGet(int slot)
+		{
+			this.slot = slot;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			return environment.boxed(slot).value;
+		}
+	}
+
+	/***
+	 * A variable of an enclosing function, read through the function's upvalue.
+	 */
+	static final class UpvalueGet extends Node
+	{
+		final int index;
+
+		UpvalueGet(int index)
+		{
+			this.index = index;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			return environment.upvalue(index).value;
+		}
+	}
+
+	static final class GlobalGet extends Node
+	{
+		final Cell cell;
+		final Token name;
+
+		GlobalGet(Cell cell, Token name)
+		{
+			this.cell = cell;
+			this.name = name;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			return Environment.get(cell, name);
+		}
+
+		@Override
+		double executeNumber(Environment environment)
+		{
+			return number(Environment.get(cell, name));
+		}
+	}
+
+	static final class LocalSet extends Node
+	{
+		final int slot;
+		final Node value;
+
+		LocalSet(int slot, Node value)
+		{
+			this.slot = slot;
+			this.value = value;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			Object value = this.value.execute(environment);
+			environment.assignAt(slot, value);
+			return value;
+		}
+	}
+
+	static final class BoxedSet extends Node
+	{
+		final int slot;
+		final Node value;
+
+		BoxedSet(int slot, Node value)
+		{
+			this.slot = slot;
+			this.value = value;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			Object value = this.value.execute(environment);
+			environment.boxed(slot).value = value;
+			return value;
+		}
+	}
+
+	static final class UpvalueSet extends Node
+	{
+		final int index;
+		final Node value;
+
+		UpvalueSet(int index, Node value)
+		{
+			this.index = index;
+			this.value = value;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			Object value = this.value.execute(environment);
+			environment.upvalue(index).value = value;
+			return value;
+		}
+	}
+
+	static final class GlobalSet extends Node
+	{
+		final Cell cell;
+		final Token name;
+		final Node value;
+
+		GlobalSet(Cell cell, Token name, Node value)
+		{
+			this.cell = cell;
+			this.name = name;
+			this.value = value;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			Object value = this.value.execute(environment);
+			Environment.assign(cell, name, value);
+			return value;
+		}
+	}
+
+	/***
+	 * Runs the node when the caller wants a number, so arithmetic can hand its result over without boxing it.
+	 * @throws UnexpectedResult with the value, if it isn't a number.
+	 */
+	double executeNumber(Environment environment)
+	{
+		return number(execute(environment));
+	}
+
+	static double number(Object value)
+	{
+		if(value instanceof Double)
+			return (double) value;
+		if(value instanceof Long)
+			return (long) value;
+		throw new UnexpectedResult(value);
+	}
+
+	/***
+	 * Thrown by executeNumber() when the value wasn't a number after all. The value still has to be used,
+	 * it was computed already (and computing it again could run a call twice).
+	 */
+	static final class UnexpectedResult extends RuntimeException
+	{
+		private static final long serialVersionUID = 1L;
+
+		final Object result;
+
+		UnexpectedResult(Object result)
+		{
+			super(null, null, false, false);
+			this.result = result;
+		}
+	}
+
+	//What an operator node has seen its operands be. It starts out UNINITIALIZED, the first run picks
+	//NUMBERS (or STRINGS for +) if the operands were that, otherwise GENERIC.
+	//Once an operand doesn't fit the node stays GENERIC for good.
+	static final int UNINITIALIZED = 0, NUMBERS = 1, STRINGS = 2, GENERIC = 3;
+
+	/***
+	 * Binary operators. Every operator is its own subclass.
+	 *
+	 * Each one specializes on what it has seen: while both operands are numbers it takes them with executeNumber(),
+	 * so they're never boxed, and the arithmetic ones hand their result up unboxed the same way.
+	 * Whole numbers (Longs, see Numbers) come in as doubles there, which gives the same results.
+	 * The fast path is written out in every operator so the JVM compiles each one on its own.
+	 */
+	abstract static class Binary extends Node
+	{
+		final Node left;
+		final Token operator;
+		final Node right;
+		int state = UNINITIALIZED;
+
+		Binary(Node left, Token operator, Node right)
+		{
+			this.left = left;
+			this.operator = operator;
+			this.right = right;
+		}
+
+		/***
+		 * Runs the operator on whatever the operands are. The first run picks the state.
+		 */
+		Object executeGeneric(Environment environment)
+		{
+			Object left = this.left.execute(environment);
+			Object right = this.right.execute(environment);
+			if(state == UNINITIALIZED)
+				state = specialize(left, right);
+			return generic(left, right);
+		}
+
+		/***
+		 * @return the state for operands like these.
+		 */
+		int specialize(Object left, Object right)
+		{
+			if(Numbers.isNumber(left) && Numbers.isNumber(right))
+				return NUMBERS;
+			return GENERIC;
+		}
+
+		/***
+		 * An operand didn't fit the state, from now on the node takes anything.
+		 */
+		Object generalize(Object left, Object right)
+		{
+			state = GENERIC;
+			return generic(left, right);
+		}
+
+		/***
+		 * The left operand wasn't a number. The right one still runs, then the operator on both.
+		 */
+		Object leftFailed(UnexpectedResult unexpected, Environment environment)
+		{
+			return generalize(unexpected.result, right.execute(environment));
+		}
+
+		/***
+		 * The operator on any operands, the same as the tree-walker, errors included.
+		 */
+		abstract Object generic(Object left, Object right);
+
+		RuntimeError numbersError()
+		{
+			return new RuntimeError(operator, "Operands must be numbers");
+		}
+	}
+
+	static final class Greater extends Binary
+	{
+		Greater(Node left, Token operator, Node right)
+		{
+			super(left, operator, right);
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			if(state == NUMBERS)
+			{
+				double left;
+				try{
+					left = this.left.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return leftFailed(unexpected, environment);
+				}
+				double right;
+				try{
+					right = this.right.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return generalize(left, unexpected.result);
+				}
+				return left > right;
+			}
+			return executeGeneric(environment);
+		}
+
+		@Override
+		Object generic(Object left, Object right)
+		{
+			if(Numbers.isNumber(left) && Numbers.isNumber(right))
+				return Numbers.greater(left, right);
+			throw numbersError();
+		}
+	}
+
+	static final class GreaterEqual extends Binary
+	{
+		GreaterEqual(Node left, Token operator, Node right)
+		{
+			super(left, operator, right);
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			if(state == NUMBERS)
+			{
+				double left;
+				try{
+					left = this.left.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return leftFailed(unexpected, environment);
+				}
+				double right;
+				try{
+					right = this.right.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return generalize(left, unexpected.result);
+				}
+				return left >= right;
+			}
+			return executeGeneric(environment);
+		}
+
+		@Override
+		Object generic(Object left, Object right)
+		{
+			if(Numbers.isNumber(left) && Numbers.isNumber(right))
+				return Numbers.greaterEqual(left, right);
+			throw numbersError();
+		}
+	}
+
+	static final class Less extends Binary
+	{
+		Less(Node left, Token operator, Node right)
+		{
+			super(left, operator, right);
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			if(state == NUMBERS)
+			{
+				double left;
+				try{
+					left = this.left.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return leftFailed(unexpected, environment);
+				}
+				double right;
+				try{
+					right = this.right.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return generalize(left, unexpected.result);
+				}
+				return left < right;
+			}
+			return executeGeneric(environment);
+		}
+
+		@Override
+		Object generic(Object left, Object right)
+		{
+			if(Numbers.isNumber(left) && Numbers.isNumber(right))
+				return Numbers.less(left, right);
+			throw numbersError();
+		}
+	}
+
+	static final class LessEqual extends Binary
+	{
+		LessEqual(Node left, Token operator, Node right)
+		{
+			super(left, operator, right);
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			if(state == NUMBERS)
+			{
+				double left;
+				try{
+					left = this.left.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return leftFailed(unexpected, environment);
+				}
+				double right;
+				try{
+					right = this.right.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return generalize(left, unexpected.result);
+				}
+				return left <= right;
+			}
+			return executeGeneric(environment);
+		}
+
+		@Override
+		Object generic(Object left, Object right)
+		{
+			if(Numbers.isNumber(left) && Numbers.isNumber(right))
+				return Numbers.lessEqual(left, right);
+			throw numbersError();
+		}
+	}
+
+	static final class Subtract extends Binary
+	{
+		Subtract(Node left, Token operator, Node right)
+		{
+			super(left, operator, right);
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			if(state == NUMBERS)
+			{
+				double left;
+				try{
+					left = this.left.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return leftFailed(unexpected, environment);
+				}
+				double right;
+				try{
+					right = this.right.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return generalize(left, unexpected.result);
+				}
+				return left - right;
+			}
+			return executeGeneric(environment);
+		}
+
+		@Override
+		double executeNumber(Environment environment)
+		{
+			if(state != NUMBERS)
+				return number(execute(environment));
+
+			double left;
+			try{
+				left = this.left.executeNumber(environment);
+			} catch(UnexpectedResult unexpected) {
+				return number(leftFailed(unexpected, environment));
+			}
+			double right;
+			try{
+				right = this.right.executeNumber(environment);
+			} catch(UnexpectedResult unexpected) {
+				return number(generalize(left, unexpected.result));
+			}
+			return left - right;
+		}
+
+		@Override
+		Object generic(Object left, Object right)
+		{
+			if(Numbers.isNumber(left) && Numbers.isNumber(right))
+				return Numbers.subtract(left, right);
+			throw numbersError();
+		}
+	}
+
+	static final class Multiply extends Binary
+	{
+		Multiply(Node left, Token operator, Node right)
+		{
+			super(left, operator, right);
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			if(state == NUMBERS)
+			{
+				double left;
+				try{
+					left = this.left.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return leftFailed(unexpected, environment);
+				}
+				double right;
+				try{
+					right = this.right.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return generalize(left, unexpected.result);
+				}
+				return left * right;
+			}
+			return executeGeneric(environment);
+		}
+
+		@Override
+		double executeNumber(Environment environment)
+		{
+			if(state != NUMBERS)
+				return number(execute(environment));
+
+			double left;
+			try{
+				left = this.left.executeNumber(environment);
+			} catch(UnexpectedResult unexpected) {
+				return number(leftFailed(unexpected, environment));
+			}
+			double right;
+			try{
+				right = this.right.executeNumber(environment);
+			} catch(UnexpectedResult unexpected) {
+				return number(generalize(left, unexpected.result));
+			}
+			return left * right;
+		}
+
+		@Override
+		Object generic(Object left, Object right)
+		{
+			if(Numbers.isNumber(left) && Numbers.isNumber(right))
+				return Numbers.multiply(left, right);
+			throw numbersError();
+		}
+	}
+
+	/***
+	 * Same as the tree-walker: dividing by zero gives 0. Not the number 0 though (it's an Integer),
+	 * so when a number is expected the 0 goes up as an UnexpectedResult.
+	 */
+	static final class Divide extends Binary
+	{
+		Divide(Node left, Token operator, Node right)
+		{
+			super(left, operator, right);
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			if(state == NUMBERS)
+			{
+				double left;
+				try{
+					left = this.left.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return leftFailed(unexpected, environment);
+				}
+				double right;
+				try{
+					right = this.right.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return generalize(left, unexpected.result);
+				}
+				if(right == 0)
+					return 0;
+				return left / right;
+			}
+			return executeGeneric(environment);
+		}
+
+		@Override
+		double executeNumber(Environment environment)
+		{
+			if(state != NUMBERS)
+				return number(execute(environment));
+
+			double left;
+			try{
+				left = this.left.executeNumber(environment);
+			} catch(UnexpectedResult unexpected) {
+				return number(leftFailed(unexpected, environment));
+			}
+			double right;
+			try{
+				right = this.right.executeNumber(environment);
+			} catch(UnexpectedResult unexpected) {
+				return number(generalize(left, unexpected.result));
+			}
+			if(right == 0)
+				throw new UnexpectedResult(0);
+			return left / right;
+		}
+
+		@Override
+		Object generic(Object left, Object right)
+		{
+			if(Numbers.isNumber(left) && Numbers.isNumber(right))
+				return Numbers.divide(left, right);
+			throw numbersError();
+		}
+	}
+
+	/***
+	 * + adds numbers and concatenates strings, same rules as the tree-walker.
+	 */
+	static final class Add extends Binary
+	{
+		Add(Node left, Token operator, Node right)
+		{
+			super(left, operator, right);
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			if(state == NUMBERS)
+			{
+				double left;
+				try{
+					left = this.left.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return leftFailed(unexpected, environment);
+				}
+				double right;
+				try{
+					right = this.right.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return generalize(left, unexpected.result);
+				}
+				return left + right;
+			}
+			if(state == STRINGS)
+			{
+				Object left = this.left.execute(environment);
+				Object right = this.right.execute(environment);
+				if(left instanceof String && right instanceof String)
+					return (String) left + (String) right;
+				return generalize(left, right);
+			}
+			return executeGeneric(environment);
+		}
+
+		@Override
+		double executeNumber(Environment environment)
+		{
+			if(state != NUMBERS)
+				return number(execute(environment));
+
+			double left;
+			try{
+				left = this.left.executeNumber(environment);
+			} catch(UnexpectedResult unexpected) {
+				return number(leftFailed(unexpected, environment));
+			}
+			double right;
+			try{
+				right = this.right.executeNumber(environment);
+			} catch(UnexpectedResult unexpected) {
+				return number(generalize(left, unexpected.result));
+			}
+			return left + right;
+		}
+
+		@Override
+		int specialize(Object left, Object right)
+		{
+			if(left instanceof String && right instanceof String)
+				return STRINGS;
+			return super.specialize(left, right);
+		}
+
+		@Override
+		Object generic(Object left, Object right)
+		{
+			if(Numbers.isNumber(left) && Numbers.isNumber(right))
+				return Numbers.add(left, right);
+			if(Numbers.isNumber(left) && right instanceof String)
+				return (String) right + Numbers.toString(left);
+			if(left instanceof String && Numbers.isNumber(right))
+				return Numbers.toString(right) + (String) left;
+			if(left instanceof String && right instanceof String)
+				return (String) left + (String) right;
+			throw new RuntimeError(operator,
+				"Operands must be two numbers or two strings");
+		}
+	}
+
+	/***
+	 * == on two numbers compares them like Double.equals() does, so 0 == -0 is false the same as in the tree-walker.
+	 */
+	static final class Equal extends Binary
+	{
+		Equal(Node left, Token operator, Node right)
+		{
+			super(left, operator, right);
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			if(state == NUMBERS)
+			{
+				double left;
+				try{
+					left = this.left.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return leftFailed(unexpected, environment);
+				}
+				double right;
+				try{
+					right = this.right.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return generalize(left, unexpected.result);
+				}
+				return Double.compare(left, right) == 0;
+			}
+			return executeGeneric(environment);
+		}
+
+		@Override
+		Object generic(Object left, Object right)
+		{
+			return Interpreter.isEqual(left, right);
+		}
+	}
+
+	static final class NotEqual extends Binary
+	{
+		NotEqual(Node left, Token operator, Node right)
+		{
+			super(left, operator, right);
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			if(state == NUMBERS)
+			{
+				double left;
+				try{
+					left = this.left.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return leftFailed(unexpected, environment);
+				}
+				double right;
+				try{
+					right = this.right.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					return generalize(left, unexpected.result);
+				}
+				return Double.compare(left, right) != 0;
+			}
+			return executeGeneric(environment);
+		}
+
+		@Override
+		Object generic(Object left, Object right)
+		{
+			return !Interpreter.isEqual(left, right);
+		}
+	}
+
+	/***
+	 * Unary minus, specialized the same way as Binary.
+	 */
+	static final class Negate extends Node
+	{
+		final Token operator;
+		final Node right;
+		int state = UNINITIALIZED;
+
+		Negate(Token operator, Node right)
+		{
+			this.operator = operator;
+			this.right = right;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			if(state == NUMBERS)
+			{
+				try{
+					return -this.right.executeNumber(environment);
+				} catch(UnexpectedResult unexpected) {
+					state = GENERIC;
+					return generic(unexpected.result);
+				}
+			}
+
+			Object right = this.right.execute(environment);
+			if(state == UNINITIALIZED)
+				state = Numbers.isNumber(right) ? NUMBERS : GENERIC;
+			return generic(right);
+		}
+
+		@Override
+		double executeNumber(Environment environment)
+		{
+			if(state != NUMBERS)
+				return number(execute(environment));
+			try{
+				return -this.right.executeNumber(environment);
+			} catch(UnexpectedResult unexpected) {
+				state = GENERIC;
+				return number(generic(unexpected.result));
+			}
+		}
+
+		private Object generic(Object right)
+		{
+			if(Numbers.isNumber(right))
+				return Numbers.negate(right);
+			throw new RuntimeError(operator, "Operand must be a number.");
+		}
+	}
+
+	static final class Not extends Node
+	{
+		final Node right;
+
+		Not(Node right)
+		{
+			this.right = right;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			return !Interpreter.isTruthy(right.execute(environment));
+		}
+	}
+
+	static final class And extends Node
+	{
+		final Node left;
+		final Node right;
+
+		And(Node left, Node right)
+		{
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			Object left = this.left.execute(environment);
+			if(!Interpreter.isTruthy(left))
+				return left;
+			return right.execute(environment);
+		}
+	}
+
+	static final class Or extends Node
+	{
+		final Node left;
+		final Node right;
+
+		Or(Node left, Node right)
+		{
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			Object left = this.left.execute(environment);
+			if(Interpreter.isTruthy(left))
+				return left;
+			return right.execute(environment);
+		}
+	}
+
+	/***
+	 * The calls: Call, Invoke and SuperInvoke. Keeps count of how deep they're nested in their engine, see Milk.maxDepth.
+	 */
+	abstract static class CallNode extends Node
+	{
+		//The NodeCompiler that made the call, it counts the calls that are running.
+		private final NodeCompiler engine;
+		final Token paren;
+		final Node[] arguments;
+		//Whether the call is in tail position.
+		final boolean tail;
+
+		CallNode(NodeCompiler engine, Token paren, Node[] arguments, boolean tail)
+		{
+			this.engine = engine;
+			this.paren = paren;
+			this.arguments = arguments;
+			this.tail = tail;
+		}
+
+		@Override
+		final Object execute(Environment environment)
+		{
+			if(engine.depth == Milk.maxDepth)
+				throw new RuntimeError(paren, "Stack overflow.");
+
+			engine.depth++;
+			try{
+				return call(environment);
+			} catch(StackOverflowError overflow) {
+				throw new RuntimeError(paren, "Stack overflow.");
+			} finally {
+				engine.depth--;
+			}
+		}
+
+		/***
+		 * Makes the call.
+		 */
+		abstract Object call(Environment environment);
+	}
+
+	static final class Call extends CallNode
+	{
+		final Node callee;
+
+		Call(NodeCompiler engine, Node callee, Token paren, Node[] arguments, boolean tail)
+		{
+			super(engine, paren, arguments, tail);
+			this.callee = callee;
+		}
+
+		@Override
+		Object call(Environment environment)
+		{
+			Object callee = this.callee.execute(environment);
+			if(tail && callee instanceof MilkFunction)
+			{
+				MilkFunction function = (MilkFunction) callee;
+				return invoke(function, function.frame(), paren, arguments,
+					environment, true);
+			}
+			return call(callee, paren, arguments, environment);
+		}
+	}
+
+	/***
+	 * Calls callee, it can be anything (a field could hold anything).
+	 * Same as the Interpreter, up to 4 arguments are passed one by one.
+	 */
+	static Object call(Object callee, Token paren, Node[] arguments,
+		Environment environment)
+	{
+		switch(arguments.length)
+		{
+			case 0:
+				return callable(paren, callee, 0).call0(null);
+			case 1:
+			{
+				Object a = arguments[0].execute(environment);
+				return callable(paren, callee, 1).call1(null, a);
+			}
+			case 2:
+			{
+				Object a = arguments[0].execute(environment);
+				Object b = arguments[1].execute(environment);
+				return callable(paren, callee, 2).call2(null, a, b);
+			}
+			case 3:
+			{
+				Object a = arguments[0].execute(environment);
+				Object b = arguments[1].execute(environment);
+				Object c = arguments[2].execute(environment);
+				return callable(paren, callee, 3).call3(null, a, b, c);
+			}
+			case 4:
+			{
+				Object a = arguments[0].execute(environment);
+				Object b = arguments[1].execute(environment);
+				Object c = arguments[2].execute(environment);
+				Object d = arguments[3].execute(environment);
+				return callable(paren, callee, 4).call4(null, a, b, c, d);
+			}
+		}
+
+		Object[] values = new Object[arguments.length];
+		for(int i = 0; i < values.length; i++)
+		{
+			values[i] = arguments[i].execute(environment);
+		}
+		//Compiled code has no Interpreter to hand over.
+		return callable(paren, callee, values.length).call(null, values);
+	}
+
+	static MilkCallable callable(Token paren, Object callee, int count)
+	{
+		if(!(callee instanceof MilkCallable))
+		{
+			throw new RuntimeError(paren,
+				"Can only call functions and classes.");
+		}
+
+		MilkCallable function = (MilkCallable) callee;
+		Interpreter.checkArity(paren, function.arity(), count);
+		return function;
+	}
+
+	/***
+	 * Calls method, the arguments go straight into frame (after "this" if its a method).
+	 * @param tail whether the call is in tail position, then it's handed back as a TailCall instead of run.
+	 */
+	static Object invoke(MilkFunction method, Environment frame, Token paren,
+		Node[] arguments, Environment environment, boolean tail)
+	{
+		//The frame only has room for the right number, the wrong number still gets evaluated before the error.
+		if(arguments.length != method.arity())
+		{
+			for(Node argument : arguments)
+			{
+				argument.execute(environment);
+			}
+			Interpreter.checkArity(paren, method.arity(), arguments.length);
+		}
+		for(Node argument : arguments)
+		{
+			frame.define(argument.execute(environment));
+		}
+
+		if(tail)
+			return new TailCall(method, frame);
+		return method.execute(null, frame);
+	}
+
+	/***
+	 * object.name(arguments). Calls the method directly instead of making a bound method first.
+	 */
+	static final class Invoke extends CallNode
+	{
+		final Node object;
+		final Token name;
+		final InlineCache cache = new InlineCache();
+
+		Invoke(NodeCompiler engine, Node object, Token name, Token paren, Node[] arguments, boolean tail)
+		{
+			super(engine, paren, arguments, tail);
+			this.object = object;
+			this.name = name;
+		}
+
+		@Override
+		Object call(Environment environment)
+		{
+			Object object = this.object.execute(environment);
+			if(!(object instanceof MilkInstance))
+			{
+				throw new RuntimeError(name,
+					"Only instances have properties.");
+			}
+
+			MilkInstance instance = (MilkInstance) object;
+			MilkFunction method = instance.method(name, cache);
+			if(method == null)
+			{
+				//A field, call whatever is in it.
+				return call(instance.get(name, cache), paren, arguments,
+					environment);
+			}
+
+			return invoke(method, method.frame(instance), paren, arguments,
+				environment, tail);
+		}
+	}
+
+	static final class GetProperty extends Node
+	{
+		final Node object;
+		final Token name;
+		final InlineCache cache = new InlineCache();
+
+		GetProperty(Node object, Token name)
+		{
+			this.object = object;
+			this.name = name;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			Object object = this.object.execute(environment);
+			if(object instanceof MilkInstance)
+			{
+				return ((MilkInstance) object).get(name, cache);
+			}
+
+			throw new RuntimeError(name,
+				"Only instances have properties.");
+		}
+	}
+
+	static final class SetProperty extends Node
+	{
+		final Node object;
+		final Token name;
+		final Node value;
+		final InlineCache cache = new InlineCache();
+
+		SetProperty(Node object, Token name, Node value)
+		{
+			this.object = object;
+			this.name = name;
+			this.value = value;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			Object object = this.object.execute(environment);
+			if(!(object instanceof MilkInstance))
+			{
+				throw new RuntimeError(name, "Only instances have fields.");
+			}
+
+			Object value = this.value.execute(environment);
+			((MilkInstance) object).set(name, value, cache);
+			return value;
+		}
+	}
+
+	/***
+	 * super.method. super is always an upvalue, only methods can use it.
+	 */
+	static final class Super extends Node
+	{
+		final int upvalue;
+		final Node receiver;
+		final Token method;
+		final InlineCache cache = new InlineCache();
+
+		Super(int upvalue, Node receiver, Token method)
+		{
+			this.upvalue = upvalue;
+			this.receiver = receiver;
+			this.method = method;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			return lookup(environment).bind(
+				(MilkInstance) receiver.execute(environment));
+		}
+
+		MilkFunction lookup(Environment environment)
+		{
+			MilkClass superclass = (MilkClass) environment.upvalue(upvalue).value;
+			MilkFunction method = cache.lookup(superclass, this.method.symbol);
+
+			if(method == null)
+			{
+				throw new RuntimeError(this.method,
+					"Undefined property '" + this.method.lexeme + "' .");
+			}
+			return method;
+		}
+	}
+
+	/***
+	 * super.method(arguments), calls the method directly like Invoke.
+	 */
+	static final class SuperInvoke extends CallNode
+	{
+		final Super method;
+
+		SuperInvoke(NodeCompiler engine, Super method, Token paren, Node[] arguments, boolean tail)
+		{
+			super(engine, paren, arguments, tail);
+			this.method = method;
+		}
+
+		@Override
+		Object call(Environment environment)
+		{
+			MilkFunction method = this.method.lookup(environment);
+			return invoke(method, method.frame(
+				(MilkInstance) this.method.receiver.execute(environment)), paren,
+				arguments, environment, tail);
+		}
+	}
+
+	/***
+	 * An expression used as a statement, the value is thrown away.
+	 */
+	static final class ExpressionStatement extends Node
+	{
+		final Node expression;
+
+		ExpressionStatement(Node expression)
+		{
+			this.expression = expression;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			expression.execute(environment);
+			return null;
+		}
+	}
+
+	static final class Print extends Node
+	{
+		final Node expression;
+
+		Print(Node expression)
+		{
+			this.expression = expression;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			System.out.println(Interpreter.stringify(expression.execute(environment)));
+			return null;
+		}
+	}
+
+	static final class DefineLocal extends Node
+	{
+		final int slot;
+		final Node value;
+
+		DefineLocal(int slot, Node value)
+		{
+			this.slot = slot;
+			this.value = value;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			environment.assignAt(slot, value.execute(environment));
+			return null;
+		}
+	}
+
+	/***
+	 * Defines a local a closure captures, in a new cell.
+	 */
+	static final class DefineBoxed extends Node
+	{
+		final int slot;
+		final Node value;
+
+		DefineBoxed(int slot, Node value)
+		{
+			this.slot = slot;
+			this.value = value;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			environment.box(slot, value.execute(environment));
+			return null;
+		}
+	}
+
+	static final class DefineGlobal extends Node
+	{
+		final Cell cell;
+		final Node value;
+
+		DefineGlobal(Cell cell, Node value)
+		{
+			this.cell = cell;
+			this.value = value;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			cell.value = value.execute(environment);
+			return null;
+		}
+	}
+
+	/***
+	 * Statements that run one after another in the current environment, like a function's body.
+	 */
+	static final class Sequence extends Node
+	{
+		final Node[] statements;
+
+		Sequence(Node[] statements)
+		{
+			this.statements = statements;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			for(Node statement : statements)
+			{
+				Object returned = statement.execute(environment);
+				if(returned != null)
+					return returned;
+			}
+			return null;
+		}
+	}
+
+	static final class If extends Node
+	{
+		final Node condition;
+		final Node thenBranch;
+		final Node elseBranch;
+
+		If(Node condition, Node thenBranch, Node elseBranch)
+		{
+			this.condition = condition;
+			this.thenBranch = thenBranch;
+			this.elseBranch = elseBranch;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			if(Interpreter.isTruthy(condition.execute(environment)))
+			{
+				return thenBranch.execute(environment);
+			}
+			else if(elseBranch != null)
+			{
+				return elseBranch.execute(environment);
+			}
+			return null;
+		}
+	}
+
+	static final class While extends Node
+	{
+		final Node condition;
+		final Node body;
+
+		While(Node condition, Node body)
+		{
+			this.condition = condition;
+			this.body = body;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			while(Interpreter.isTruthy(condition.execute(environment)))
+			{
+				Object returned = body.execute(environment);
+				if(returned != null)
+					return returned;
+			}
+			return null;
+		}
+	}
+
+	/***
+	 * A for loop. The initializer runs once, so a var in it is the same variable for the whole loop.
+	 */
+	static final class For extends Node
+	{
+		final Node initializer;
+		final Node condition;
+		final Node increment;
+		final Node body;
+
+		For(Node initializer, Node condition, Node increment, Node body)
+		{
+			this.initializer = initializer;
+			this.condition = condition;
+			this.increment = increment;
+			this.body = body;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			if(initializer != null)
+				initializer.execute(environment);
+
+			while(Interpreter.isTruthy(condition.execute(environment)))
+			{
+				Object returned = body.execute(environment);
+				if(returned != null)
+					return returned;
+				if(increment != null)
+					increment.execute(environment);
+			}
+			return null;
+		}
+	}
+
+	static final class Return extends Node
+	{
+		final Node value;
+
+		Return(Node value)
+		{
+			this.value = value;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			if(this.value == null)
+				return RETURNED_NIL;
+			Object value = this.value.execute(environment);
+			return value == null ? RETURNED_NIL : value;
+		}
+	}
+
+	/***
+	 * Creates the function. global is its cell if its declared at the top level, otherwise its a local.
+	 */
+	static final class FunctionDeclaration extends Node
+	{
+		final Stmt.Function declaration;
+		final Node body;
+		final Cell global;
+
+		FunctionDeclaration(Stmt.Function declaration, Node body, Cell global)
+		{
+			this.declaration = declaration;
+			this.body = body;
+			this.global = global;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			//Same order as the Interpreter: a captured name's cell is there before the closure takes it.
+			if(declaration.captured)
+				environment.box(declaration.slot, null);
+			MilkFunction function = new CompiledFunction(declaration, body,
+				environment.capture(declaration.captures), false);
+			define(environment, global, declaration.slot, declaration.captured, function);
+			return null;
+		}
+	}
+
+	/***
+	 * Puts a declared function or class where it goes. A captured one's cell is already in its slot.
+	 */
+	static void define(Environment environment, Cell global, int slot, boolean captured,
+		Object value)
+	{
+		if(global != null)
+			global.value = value;
+		else if(captured)
+			environment.boxed(slot).value = value;
+		else
+			environment.assignAt(slot, value);
+	}
+
+	/***
+	 * Creates the class, same steps as the Interpreter's visitClassStmt().
+	 */
+	static final class ClassDeclaration extends Node
+	{
+		final Stmt.Class declaration;
+		final Token name;
+		final Node superclass;
+		final Token superclassName;
+		final Stmt.Function[] methods;
+		final Node[] bodies;
+		final Cell global;
+
+		ClassDeclaration(Stmt.Class declaration, Node superclass,
+			Stmt.Function[] methods, Node[] bodies, Cell global)
+		{
+			this.declaration = declaration;
+			this.name = declaration.name;
+			this.superclass = superclass;
+			this.superclassName = superclass == null ? null : declaration.superclass.name;
+			this.methods = methods;
+			this.bodies = bodies;
+			this.global = global;
+		}
+
+		@Override
+		Object execute(Environment environment)
+		{
+			Object superclass = null;
+			if(this.superclass != null)
+			{
+				superclass = this.superclass.execute(environment);
+				if(!(superclass instanceof MilkClass))
+				{
+					throw new RuntimeError(superclassName,
+						"Superclass must be a class.");
+				}
+			}
+
+			if(superclass != null)
+				environment.box(declaration.superSlot, superclass);
+			if(declaration.captured)
+				environment.box(declaration.slot, null);
+
+			Map<Symbol, MilkFunction> methods = new HashMap<>();
+			for(int i = 0; i < this.methods.length; i++)
+			{
+				Symbol name = this.methods[i].name.symbol;
+				methods.put(name, new CompiledFunction(this.methods[i], bodies[i],
+					environment.capture(this.methods[i].captures), name == Symbol.INIT));
+			}
+
+			MilkClass klass = new MilkClass(name.lexeme,
+				(MilkClass) superclass, methods);
+			define(environment, global, declaration.slot, declaration.captured, klass);
+			return null;
+		}
+	}
+}
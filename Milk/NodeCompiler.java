@@ -0,0 +1,328 @@
+package JavaInterpreter.Milk;
+
+import java.util.List;
+/***
+ * Compiles the syntax tree into a tree of executable Nodes, then runs them.
+ *
+ * Runs after the Resolver and uses the slots it left on the tree, so the nodes
+ * work on the same Environments as the Interpreter does. The difference is that every decision
+ * the Interpreter makes each time it visits a node (which operator, local or global, which global)
+ * is made once here, and the node that comes out only does the work that's left.
+ */
+class NodeCompiler implements Expr.Visitor<Node>, Stmt.Visitor<Node>
+{
+	final Environment globals = new Environment();
+	//How many calls are running right now, see Milk.maxDepth. The calls it compiles keep it up to date.
+	int depth = 0;
+
+	NodeCompiler()
+	{
+		Interpreter.defineNatives(globals);
+	}
+
+	/***
+	 * Compiles the statements and runs them.
+	 * @param frameSize the slots the top level code needs, see Resolver.frameSize().
+	 */
+	void interpret(List<Stmt> statements, int frameSize)
+	{
+		Node program = new Node.Sequence(compile(statements));
+		try{
+			program.execute(new Environment(frameSize, Environment.NO_UPVALUES));
+		} catch(RuntimeError error) {
+			Milk.runtimeError(error);
+		}
+	}
+
+	private Node[] compile(List<Stmt> statements)
+	{
+		Node[] nodes = new Node[statements.size()];
+		for(int i = 0; i < nodes.length; i++)
+		{
+			nodes[i] = statements.get(i).accept(this);
+		}
+		return nodes;
+	}
+
+	private Node compile(Expr expr)
+	{
+		return expr.accept(this);
+	}
+
+	/***
+	 * Compiles a function's body. The body runs in the function's own environment, not a new one.
+	 */
+	private Node compileBody(Stmt.Function function)
+	{
+		return new Node.Sequence(compile(function.body));
+	}
+
+	/***
+	 * @return the cell of a declaration at the top level, or null for a local one.
+	 */
+	private Cell declare(Token name, int slot)
+	{
+		if(slot == -1)
+			return globals.cell(name.symbol);
+		return null;
+	}
+
+	/***
+	 * The node that reads a local from where the Resolver put it.
+	 */
+	private static Node local(int slot, boolean upvalue, boolean captured)
+	{
+		if(upvalue)
+			return new Node.UpvalueGet(slot);
+		if(captured)
+			return new Node.BoxedGet(slot);
+		return new Node.LocalGet(slot);
+	}
+
+	/***
+	 * Blocks don't need an environment of their own, their locals have slots in the function's frame.
+	 */
+	@Override
+	public Node visitBlockStmt(Stmt.Block stmt)
+	{
+		return new Node.Sequence(compile(stmt.statements));
+	}
+
+	@Override
+	public Node visitClassStmt(Stmt.Class stmt)
+	{
+		Node superclass = null;
+		if(stmt.superclass != null)
+			superclass = compile(stmt.superclass);
+
+		Stmt.Function[] methods = stmt.methods.toArray(new Stmt.Function[0]);
+		Node[] bodies = new Node[methods.length];
+		for(int i = 0; i < methods.length; i++)
+		{
+			bodies[i] = compileBody(methods[i]);
+		}
+
+		return new Node.ClassDeclaration(stmt, superclass, methods, bodies,
+			declare(stmt.name, stmt.slot));
+	}
+
+	@Override
+	public Node visitExpressionStmt(Stmt.Expression stmt)
+	{
+		return new Node.ExpressionStatement(compile(stmt.expression));
+	}
+
+	@Override
+	public Node visitForStmt(Stmt.For stmt)
+	{
+		Node initializer = null;
+		if(stmt.initializer != null)
+			initializer = stmt.initializer.accept(this);
+		Node increment = null;
+		if(stmt.increment != null)
+			increment = compile(stmt.increment);
+		return new Node.For(initializer, compile(stmt.condition), increment,
+			stmt.body.accept(this));
+	}
+
+	@Override
+	public Node visitFunctionStmt(Stmt.Function stmt)
+	{
+		return new Node.FunctionDeclaration(stmt, compileBody(stmt),
+			declare(stmt.name, stmt.slot));
+	}
+
+	@Override
+	public Node visitIfStmt(Stmt.If stmt)
+	{
+		Node elseBranch = null;
+		if(stmt.elseBranch != null)
+			elseBranch = stmt.elseBranch.accept(this);
+		return new Node.If(compile(stmt.condition), stmt.thenBranch.accept(this),
+			elseBranch);
+	}
+
+	@Override
+	public Node visitPrintStmt(Stmt.Print stmt)
+	{
+		return new Node.Print(compile(stmt.expression));
+	}
+
+	@Override
+	public Node visitReturnStmt(Stmt.Return stmt)
+	{
+		Node value = null;
+		if(stmt.tailCall)
+			value = compileCall((Expr.Call) stmt.value, true);
+		else if(stmt.value != null)
+			value = compile(stmt.value);
+		return new Node.Return(value);
+	}
+
+	@Override
+	public Node visitVarStmt(Stmt.Var stmt)
+	{
+		Node value = new Node.Constant(null);
+		if(stmt.initializer != null)
+			value = compile(stmt.initializer);
+
+		Cell global = declare(stmt.name, stmt.slot);
+		if(global != null)
+			return new Node.DefineGlobal(global, value);
+		if(stmt.captured)
+			return new Node.DefineBoxed(stmt.slot, value);
+		return new Node.DefineLocal(stmt.slot, value);
+	}
+
+	@Override
+	public Node visitWhileStmt(Stmt.While stmt)
+	{
+		return new Node.While(compile(stmt.condition), stmt.body.accept(this));
+	}
+
+	@Override
+	public Node visitAssignExpr(Expr.Assign expr)
+	{
+		Node value = compile(expr.value);
+		if(expr.slot == -1)
+			return new Node.GlobalSet(globals.cell(expr.name.symbol), expr.name, value);
+		if(expr.upvalue)
+			return new Node.UpvalueSet(expr.slot, value);
+		if(expr.captured)
+			return new Node.BoxedSet(expr.slot, value);
+		return new Node.LocalSet(expr.slot, value);
+	}
+
+	/***
+	 * Picks the node for the operator, so the switch only happens once.
+	 */
+	@Override
+	public Node visitBinaryExpr(Expr.Binary expr)
+	{
+		Node left = compile(expr.left);
+		Node right = compile(expr.right);
+
+		switch(expr.operator.type)
+		{
+			case GREATER:
+				return new Node.Greater(left, expr.operator, right);
+			case GREATER_EQUAL:
+				return new Node.GreaterEqual(left, expr.operator, right);
+			case LESS:
+				return new Node.Less(left, expr.operator, right);
+			case LESS_EQUAL:
+				return new Node.LessEqual(left, expr.operator, right);
+			case MINUS:
+				return new Node.Subtract(left, expr.operator, right);
+			case PLUS:
+				return new Node.Add(left, expr.operator, right);
+			case SLASH:
+				return new Node.Divide(left, expr.operator, right);
+			case STAR:
+				return new Node.Multiply(left, expr.operator, right);
+			case BANG_EQUAL:
+				return new Node.NotEqual(left, expr.operator, right);
+			case EQUAL_EQUAL:
+				return new Node.Equal(left, expr.operator, right);
+		}
+		//Impossible to reach, the Parser only makes binaries out of those.
+		return null;
+	}
+
+	@Override
+	public Node visitCallExpr(Expr.Call expr)
+	{
+		return compileCall(expr, false);
+	}
+
+	/***
+	 * @param tail whether the call is in tail position, see Node.TailCall.
+	 */
+	private Node compileCall(Expr.Call expr, boolean tail)
+	{
+		Node[] arguments = new Node[expr.arguments.size()];
+		for(int i = 0; i < arguments.length; i++)
+		{
+			arguments[i] = compile(expr.arguments.get(i));
+		}
+
+		//Method calls skip making a bound method.
+		if(expr.callee instanceof Expr.Get)
+		{
+			Expr.Get get = (Expr.Get) expr.callee;
+			return new Node.Invoke(this, compile(get.object), get.name, expr.paren,
+				arguments, tail);
+		}
+		if(expr.callee instanceof Expr.Super)
+		{
+			return new Node.SuperInvoke(this, (Node.Super) compile(expr.callee),
+				expr.paren, arguments, tail);
+		}
+		return new Node.Call(this, compile(expr.callee), expr.paren, arguments, tail);
+	}
+
+	@Override
+	public Node visitGetExpr(Expr.Get expr)
+	{
+		return new Node.GetProperty(compile(expr.object), expr.name);
+	}
+
+	@Override
+	public Node visitGroupingExpr(Expr.Grouping expr)
+	{
+		//Grouping only matters to the parser.
+		return compile(expr.expression);
+	}
+
+	@Override
+	public Node visitLiteralExpr(Expr.Literal expr)
+	{
+		return new Node.Constant(expr.value);
+	}
+
+	@Override
+	public Node visitLogicalExpr(Expr.Logical expr)
+	{
+		Node left = compile(expr.left);
+		Node right = compile(expr.right);
+		if(expr.operator.type == TokenType.OR)
+			return new Node.Or(left, right);
+		return new Node.And(left, right);
+	}
+
+	@Override
+	public Node visitSetExpr(Expr.Set expr)
+	{
+		return new Node.SetProperty(compile(expr.object), expr.name,
+			compile(expr.value));
+	}
+
+	@Override
+	public Node visitSuperExpr(Expr.Super expr)
+	{
+		return new Node.Super(expr.upvalue, compile(expr.receiver), expr.method);
+	}
+
+	@Override
+	public Node visitThisExpr(Expr.This expr)
+	{
+		return local(expr.slot, expr.upvalue, expr.captured);
+	}
+
+	@Override
+	public Node visitUnaryExpr(Expr.Unary expr)
+	{
+		Node right = compile(expr.right);
+		if(expr.operator.type == TokenType.BANG)
+			return new Node.Not(right);
+		return new Node.Negate(expr.operator, right);
+	}
+
+	@Override
+	public Node visitVariableExpr(Expr.Variable expr)
+	{
+		if(expr.slot == -1)
+			return new Node.GlobalGet(globals.cell(expr.name.symbol), expr.name);
+		return local(expr.slot, expr.upvalue, expr.captured);
+	}
+}
@@ -0,0 +1,165 @@
+package JavaInterpreter.Milk;
+
+/***
+ * Arithmetic on Milk numbers, shared by the engines.
+ *
+ * Milk only has one kind of number, but under the hood whole numbers are kept as Long and the rest as Double.
+ * A Long never goes past 2^53, where doubles still hold every whole number exactly, and anything that
+ * would leave that range (or be -0, which a Long can't be) is done in doubles instead.
+ * So every result is the same number doubles would have given, and prints the same.
+ *
+ * The operations take numbers, checking that the operands are numbers is up to the caller.
+ */
+final class Numbers
+{
+	//Every whole number up to this one is exactly a double.
+	static final long MAX_EXACT = 1L << 53;
+	//Two numbers under this multiply to under 2^52.
+	private static final long SMALL = 1L << 26;
+
+	static boolean isNumber(Object value)
+	{
+		return value instanceof Long || value instanceof Double;
+	}
+
+	static double toDouble(Object number)
+	{
+		if(number instanceof Long)
+			return (long) number;
+		return (double) number;
+	}
+
+	/***
+	 * @return how Java writes the number as a double, "2.0" for 2. It's how numbers end up in strings.
+	 */
+	static String toString(Object number)
+	{
+		return Double.toString(toDouble(number));
+	}
+
+	private static boolean exact(long value)
+	{
+		return value >= -MAX_EXACT && value <= MAX_EXACT;
+	}
+
+	static Object add(Object a, Object b)
+	{
+		if(a instanceof Long && b instanceof Long)
+			return add((long) a, (long) b);
+		return toDouble(a) + toDouble(b);
+	}
+
+	static Object add(long a, long b)
+	{
+		long sum = a + b;
+		if(exact(sum))
+			return sum;
+		return (double) a + (double) b;
+	}
+
+	static Object subtract(Object a, Object b)
+	{
+		if(a instanceof Long && b instanceof Long)
+			return subtract((long) a, (long) b);
+		return toDouble(a) - toDouble(b);
+	}
+
+	static Object subtract(long a, long b)
+	{
+		long difference = a - b;
+		if(exact(difference))
+			return difference;
+		return (double) a - (double) b;
+	}
+
+	static Object multiply(Object a, Object b)
+	{
+		if(a instanceof Long && b instanceof Long)
+			return multiply((long) a, (long) b);
+		return toDouble(a) * toDouble(b);
+	}
+
+	static Object multiply(long a, long b)
+	{
+		//Under 2^26 each, the product is under 2^52. Otherwise the double product decides:
+		//under 2^53 it's exact, so the Long one is the same number and can't overflow.
+		//A zero stays a double, it could be -0.
+		long product = a * b;
+		if(product != 0 && Math.abs(a) < SMALL && Math.abs(b) < SMALL)
+			return product;
+
+		double rounded = (double) a * (double) b;
+		if(rounded != 0 && Math.abs(rounded) < MAX_EXACT)
+			return product;
+		return rounded;
+	}
+
+	/***
+	 * Dividing by zero gives 0, like it always has in Milk. Not the number 0 though, Integer 0.
+	 */
+	static Object divide(Object a, Object b)
+	{
+		if(a instanceof Long && b instanceof Long)
+			return divide((long) a, (long) b);
+
+		double divisor = toDouble(b);
+		if(divisor == 0)
+			return 0;
+		return toDouble(a) / divisor;
+	}
+
+	static Object divide(long a, long b)
+	{
+		if(b == 0)
+			return 0;
+		//0 / -b is -0.
+		if(a % b == 0 && (a != 0 || b > 0))
+			return a / b;
+		return (double) a / (double) b;
+	}
+
+	static Object negate(Object a)
+	{
+		if(a instanceof Long && (long) a != 0)
+			return -(long) a;
+		return -toDouble(a);
+	}
+
+	static boolean greater(Object a, Object b)
+	{
+		if(a instanceof Long && b instanceof Long)
+			return (long) a > (long) b;
+		return toDouble(a) > toDouble(b);
+	}
+
+	static boolean greaterEqual(Object a, Object b)
+	{
+		if(a instanceof Long && b instanceof Long)
+			return (long) a >= (long) b;
+		return toDouble(a) >= toDouble(b);
+	}
+
+	static boolean less(Object a, Object b)
+	{
+		if(a instanceof Long && b instanceof Long)
+			return (long) a < (long) b;
+		return toDouble(a) < toDouble(b);
+	}
+
+	static boolean lessEqual(Object a, Object b)
+	{
+		if(a instanceof Long && b instanceof Long)
+			return (long) a <= (long) b;
+		return toDouble(a) <= toDouble(b);
+	}
+
+	/***
+	 * == on numbers, the way Double.equals() has it: 0 and -0 are different, NaN is itself.
+	 */
+	static boolean equal(Object a, Object b)
+	{
+		if(a instanceof Long && b instanceof Long)
+			return (long) a == (long) b;
+		return Double.compare(toDouble(a), toDouble(b)) == 0;
+	}
+}
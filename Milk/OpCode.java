@@ -0,0 +1,75 @@
+package JavaInterpreter.Milk;
+
+/***
+ * The instruction set of Milk's bytecode VM.
+ *
+ * Every instruction is one byte, some are followed by operands.
+ * All operands are unsigned 16 bit numbers: an index into the constant table, a global,
+ * a stack slot, an upvalue, an argument count or a jump distance.
+ *
+ * The comment next to each instruction lists its operands and what it does to the stack.
+ */
+final class OpCode
+{
+	//Literals
+	static final byte OP_CONSTANT = 0;       // constant       ( -- value)
+	static final byte OP_NIL = 1;            //                ( -- nil)
+	static final byte OP_TRUE = 2;           //                ( -- true)
+	static final byte OP_FALSE = 3;          //                ( -- false)
+	static final byte OP_POP = 4;            //                (value -- )
+
+	//Variables
+	static final byte OP_GET_LOCAL = 5;      // slot           ( -- value)
+	static final byte OP_SET_LOCAL = 6;      // slot           (value -- value)
+	static final byte OP_GET_GLOBAL = 7;     // global         ( -- value)
+	static final byte OP_DEFINE_GLOBAL = 8;  // global         (value -- )
+	static final byte OP_SET_GLOBAL = 9;     // global         (value -- value)
+	static final byte OP_GET_UPVALUE = 10;   // upvalue        ( -- value)
+	static final byte OP_SET_UPVALUE = 11;   // upvalue        (value -- value)
+
+	//Properties
+	static final byte OP_GET_PROPERTY = 12;  // name           (instance -- value)
+	static final byte OP_SET_PROPERTY = 13;  // name           (instance value -- value)
+	static final byte OP_CHECK_FIELDS = 14;  //                (object -- object) errors unless object is an instance
+	static final byte OP_GET_METHOD = 15;    // name           (instance -- callee receiver)
+	static final byte OP_GET_SUPER = 16;     // name           (this superclass -- bound method)
+	static final byte OP_SUPER_METHOD = 17;  // name           (this superclass -- method this)
+
+	//Operators
+	static final byte OP_EQUAL = 18;         //                (a b -- a == b)
+	static final byte OP_NOT_EQUAL = 19;     //                (a b -- a != b)
+	static final byte OP_GREATER = 20;
+	static final byte OP_GREATER_EQUAL = 21;
+	static final byte OP_LESS = 22;
+	static final byte OP_LESS_EQUAL = 23;
+	static final byte OP_ADD = 24;
+	static final byte OP_SUBTRACT = 25;
+	static final byte OP_MULTIPLY = 26;
+	static final byte OP_DIVIDE = 27;
+	static final byte OP_NOT = 28;           //                (a -- !a)
+	static final byte OP_NEGATE = 29;        //                (a -- -a)
+
+	//Statements and control flow
+	static final byte OP_PRINT = 30;         //                (value -- )
+	static final byte OP_JUMP = 31;          // distance       ( -- )
+	static final byte OP_JUMP_IF_FALSE = 32; // distance       (condition -- condition) jumps if condition is falsey
+	static final byte OP_LOOP = 33;          // distance       ( -- ) jumps backwards
+
+	//Functions and classes
+	static final byte OP_CALL = 34;          // argc           (callee args -- result)
+	static final byte OP_CALL_METHOD = 35;   // argc           (callee receiver args -- result)
+	static final byte OP_CLOSURE = 36;       // function, then a byte isLocal and an index per upvalue ( -- closure)
+	static final byte OP_CLOSE_UPVALUE = 37; //                (value -- ) moves the local into its upvalue
+	static final byte OP_RETURN = 38;        //                (result -- )
+	static final byte OP_CLASS = 39;         // name           ( -- class)
+	static final byte OP_INHERIT = 40;       //                (superclass class -- superclass class)
+	static final byte OP_METHOD = 41;        // name           (class closure -- class)
+	//A return of a call, followed by an OP_RETURN. A Milk function is run in the caller's frame instead of a new one,
+	//anything else is called like OP_CALL does and the OP_RETURN returns what it gives back.
+	static final byte OP_TAIL_CALL = 42;     // argc           (callee args -- result)
+	static final byte OP_TAIL_CALL_METHOD = 43; // argc        (callee receiver args -- result)
+
+	private OpCode()
+	{
+	}
+}
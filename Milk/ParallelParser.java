@@ -0,0 +1,193 @@
+package JavaInterpreter.Milk;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+/***
+ * Scans and parses a big source in chunks, on a thread per core.
+ *
+ * The source is cut where one top-level declaration ends and the next begins: right after a ; or } that's outside
+ * every () and {} and string and comment, unless an else comes next. The top level keeps nothing from one declaration
+ * to the next, so each chunk parses the same as it would have in one piece. Each chunk's scanner starts on the line the
+ * chunk starts on, so the lines come out right too.
+ * That only holds for code without syntax errors though: the parser recovers from one differently than the cuts do, and
+ * a chunk that stops partway says so at its own end. So if any chunk has an error, the chunks are thrown away and the
+ * whole source is parsed again in one piece, and those are the errors that get reported.
+ * The threads get as much stack as the milk thread, so code nested deep enough to need it parses the same way too.
+ */
+class ParallelParser
+{
+	//Chunks are at least this many characters, smaller ones aren't worth a task.
+	private static final int MIN_CHUNK = 1 << 16;
+
+	private static class Chunk implements Callable<Chunk>
+	{
+		private final String source;
+		private final int line;
+		private final int offset;
+		List<Stmt> statements;
+		final List<String> errors = new ArrayList<>();
+
+		Chunk(String source, int line, int offset)
+		{
+			this.source = source;
+			this.line = line;
+			this.offset = offset;
+		}
+
+		@Override
+		public Chunk call()
+		{
+			List<String> enclosing = Milk.errors.get();
+			Milk.errors.set(errors);
+			try{
+				statements = new Parser(new Scanner(new StringReader(source), line, offset)).parse();
+			} finally {
+				Milk.errors.set(enclosing);
+			}
+			return this;
+		}
+	}
+
+	/***
+	 * Parses source, using every core if its big enough to be worth it.
+	 * @return the statements, same as Parser.parse() gives.
+	 */
+	static List<Stmt> parse(String source) throws InterruptedException
+	{
+		int cores = Runtime.getRuntime().availableProcessors();
+		int size = Math.max(MIN_CHUNK, source.length() / (cores * 4));
+		List<Chunk> chunks = split(source, size);
+		if(chunks.size() == 1)
+			return new Parser(new Scanner(source)).parse();
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(cores, chunks.size()),
+			task -> new Thread(null, task, "milk-parser", Milk.stack));
+		try{
+			for(Future<Chunk> done : pool.invokeAll(chunks))
+			{
+				done.get();
+			}
+		} catch(ExecutionException e) {
+			//Something other than a Milk error, let it go on like it would from the milk thread.
+			if(e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw (RuntimeException) e.getCause();
+		} finally {
+			pool.shutdown();
+		}
+
+		List<Stmt> statements = new ArrayList<>();
+		for(Chunk chunk : chunks)
+		{
+			if(!chunk.errors.isEmpty())
+				return new Parser(new Scanner(source)).parse();
+			statements.addAll(chunk.statements);
+		}
+		return statements;
+	}
+
+	/***
+	 * Cuts source into chunks of at least size characters, each one a run of whole top-level declarations.
+	 */
+	private static List<Chunk> split(String source, int size)
+	{
+		List<Chunk> chunks = new ArrayList<>();
+		int start = 0;
+		int startLine = 1;
+		int line = 1;
+		//() and {} together. Code where they don't match never gets back to 0, it's just left in one piece.
+		int depth = 0;
+
+		int i = 0;
+		while(i < source.length())
+		{
+			char c = source.charAt(i++);
+			switch(c)
+			{
+				case '\n':
+					line++;
+					break;
+				case '"':
+					//Strings go to the next ", or the end if there isn't one. Same as the Scanner.
+					while(i < source.length() && source.charAt(i) != '"')
+					{
+						if(source.charAt(i) == '\n')
+							line++;
+						i++;
+					}
+					i++;
+					break;
+				case '/':
+					if(i < source.length() && source.charAt(i) == '/')
+					{
+						while(i < source.length() && source.charAt(i) != '\n')
+							i++;
+					}
+					break;
+				case '(':
+				case '{':
+					depth++;
+					break;
+				case ')':
+					depth--;
+					break;
+				case '}':
+					depth--;
+					if(depth == 0 && i - start >= size && !elseAt(source, i))
+					{
+						chunks.add(new Chunk(source.substring(start, i), startLine, start));
+						start = i;
+						startLine = line;
+					}
+					break;
+				case ';':
+					if(depth == 0 && i - start >= size && !elseAt(source, i))
+					{
+						chunks.add(new Chunk(source.substring(start, i), startLine, start));
+						start = i;
+						startLine = line;
+					}
+					break;
+			}
+		}
+
+		if(start < source.length() || chunks.isEmpty())
+			chunks.add(new Chunk(source.substring(start), startLine, start));
+		return chunks;
+	}
+
+	/***
+	 * @return true if the next token from i on is else, meaning the if before it isn't done.
+	 */
+	private static boolean elseAt(String source, int i)
+	{
+		while(i < source.length())
+		{
+			char c = source.charAt(i);
+			if(c == '/' && i + 1 < source.length() && source.charAt(i + 1) == '/')
+			{
+				while(i < source.length() && source.charAt(i) != '\n')
+					i++;
+			}
+			else if(c == ' ' || c == '\r' || c == '\t' || c == '\n')
+				i++;
+			else
+				break;
+		}
+
+		if(!source.startsWith("else", i))
+			return false;
+		if(i + 4 == source.length())
+			return true;
+		//elsewhere is a variable.
+		char after = source.charAt(i + 4);
+		return !((after >= 'a' && after <= 'z') || (after >= 'A' && after <= 'Z') ||
+			(after >= '0' && after <= '9') || after == '_');
+	}
+}
@@ -1,7 +1,6 @@
 package JavaInterpreter.Milk;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import static JavaInterpreter.Milk.TokenType.*;
@@ -31,19 +30,21 @@ class Parser
 	 to unwind it or not. 
 
 	*/
-	private static class ParseError extends RuntimeException{}
+	private static class ParseError extends RuntimeException
+	{
+		private static final long serialVersionUID = 1L;
+	}
 	
-	private final List<Token> tokens;
-	//Current points at the new token to be used.
-	private int current = 0;
+	//The parser only ever looks one token ahead or one back, so those are the only tokens it keeps.
+	private final TokenBuffer tokens;
 	/***
 	 * Parser constructor. Consumes a sequence at the token level.
-	 * int field current points to the next token.
-	 * @param tokens the list of tokens ready to be parsed.
+	 * Tokens are scanned as the parser gets to them.
+	 * @param scanner the scanner handing out the tokens to be parsed.
 	 */
-	Parser(List<Token> tokens)
+	Parser(Scanner scanner)
 	{
-		this.tokens = tokens;
+		this.tokens = new TokenBuffer(scanner);
 	}
 
 	/***
@@ -68,12 +69,53 @@ class Parser
 		List<Stmt> statements = new ArrayList<>();
 		while(!isAtEnd())
 		{
-			statements.add(declaration());
+			statements.add(topLevel());
 		}
 
 		return statements;
 	}
 
+	/***
+	 * parse() a declaration at a time, for IncrementalParser.
+	 * @return the next top-level declaration, null if it had a syntax error.
+	 */
+	Stmt parseDeclaration()
+	{
+		return topLevel();
+	}
+
+	/***
+	 * @return true once there's nothing left but EOF.
+	 */
+	boolean atEnd()
+	{
+		return isAtEnd();
+	}
+
+	/***
+	 * @return where the next token starts in the source.
+	 */
+	int offset()
+	{
+		return tokens.start();
+	}
+
+	/***
+	 * @return the line the next token starts on.
+	 */
+	int line()
+	{
+		return tokens.startLine();
+	}
+
+	/***
+	 * Every Token made from now on goes in made, see TokenBuffer.record().
+	 */
+	void record(List<Token> made)
+	{
+		tokens.record(made);
+	}
+
 	// Statement parser: for all my statement needs
 	/***
 	 * The granddaddy of all expressions and what not. 
@@ -106,14 +148,13 @@ class Parser
 
 	/***
 	 * For Loop Parser
-	 * We're gonna do desugaring.
-	 * Instead of using Java's for loop, we'll just reduce the for loop to a while loop.
+	 * Parses the three clauses and the body into a Stmt.For.
 	 * @return
 	 */
 	private Stmt forStatement()
 	{
 		//( after for
-		consume(LEFT_PAREN,"Expect '(' after 'for' .");
+		expect(LEFT_PAREN,"Expect '(' after 'for' .");
 		//initializer is executed only once. Imagine int i = 0 or something.
 		Stmt initializer;
 		//What the initalizer depends on the match(). It's either nothing, a variable or an expression statement.
@@ -140,7 +181,7 @@ class Parser
 			condition = expression();
 		}
 		///Error handling
-		consume(SEMICOLON, "Expect ';' after loop condition.");
+		expect(SEMICOLON, "Expect ';' after loop condition.");
 		
 		//Increment keeps the for loop going. Think i++.
 		Expr increment = null;
@@ -149,32 +190,18 @@ class Parser
 			increment = expression();
 		}
 		//Error handling
-		consume(RIGHT_PAREN,"Expect ')' after for clauses.");
+		expect(RIGHT_PAREN,"Expect ')' after for clauses.");
 		
 		//Just like the while loop, the body of the for loop is put into one statement.
 		Stmt body = statement();
 		
-		//Desugaring begins.
-		//Turn the increment (if there is one) to a new expression.
-		//Create a block where the increment executes after the body each time.
-		if(increment != null)
-		{
-			body = new Stmt.Block(Arrays.asList(
-				body, new Stmt.Expression(increment)));
-		}
 		// Condition? Then assume true
 		if(condition == null)
 			//Truth
 			condition = new Expr.Literal(true);
-		//The body is jammed (that doesn't sound right) with the condition and the body from increment section to create a while object.
-		body = new Stmt.While(condition, body);
-		
-		if(initializer != null)
-		{
-			body = new Stmt.Block(Arrays.asList(initializer, body));
-		}
-		//Return the body. Didn't have to touch interpreter because we desugared. Incredible.
-		return body;
+		//Used to desugar into blocks and a while loop, but the block around the body and increment
+		//made a new environment every time around. For loops get their own statement now.
+		return new Stmt.For(initializer, condition, increment, body);
 	}
 
 	/***
@@ -187,9 +214,9 @@ class Parser
 	private Stmt ifStatement()
 	{	
 		
-		consume(LEFT_PAREN, "Expect '(' after 'if'.");
+		expect(LEFT_PAREN, "Expect '(' after 'if'.");
 		Expr condition = expression();
-		consume(RIGHT_PAREN, "Expect ')' after if condition,");
+		expect(RIGHT_PAREN, "Expect ')' after if condition,");
 		
 		Stmt thenBranch = statement();
 		Stmt elseBranch = null;
@@ -213,7 +240,7 @@ class Parser
 		//grab the expression
 		Expr value = expression();
 		//consume the expected semicolon. This is error-handling.
-		consume(SEMICOLON, "Expect ';' after value.");
+		expect(SEMICOLON, "Expect ';' after value.");
 		return new Stmt.Print(value);
 	}
 
@@ -233,7 +260,7 @@ class Parser
 			value = expression();
 		}
 
-		consume(SEMICOLON, "Expect ';' after return value.");
+		expect(SEMICOLON, "Expect ';' after return value.");
 		return new Stmt.Return(keyword, value);
 	}
 	
@@ -259,7 +286,7 @@ class Parser
 			initializer = expression();
 		}
 
-		consume(SEMICOLON, "Expect ';' after variable declaration.");
+		expect(SEMICOLON, "Expect ';' after variable declaration.");
 		return new Stmt.Var(name, initializer);
 	}
 	
@@ -272,9 +299,9 @@ class Parser
 	 */
 	private Stmt whileStatement()
 	{
-		consume(LEFT_PAREN, "Expect '(' after 'while'.");
+		expect(LEFT_PAREN, "Expect '(' after 'while'.");
 		Expr condition = expression();
-		consume(RIGHT_PAREN, "Expect ')' after condition.");
+		expect(RIGHT_PAREN, "Expect ')' after condition.");
 		Stmt body = statement();
 
 		return new Stmt.While(condition, body);
@@ -290,7 +317,7 @@ class Parser
 	private Stmt expressionStatement()
 	{	
 		Expr expr = expression();
-		consume(SEMICOLON, "Expect ';' after expression.");
+		expect(SEMICOLON, "Expect ';' after expression.");
 		return new Stmt.Expression(expr);
 	}
 	
@@ -303,7 +330,7 @@ class Parser
 		//We need a name here
 		Token name = consume(IDENTIFIER, "Expect " + kind + " name.");
 	
-		consume(LEFT_PAREN, "Expect '(' after " + kind + " name.");
+		expect(LEFT_PAREN, "Expect '(' after " + kind + " name.");
 		List<Token> parameters = new ArrayList<>();
 		//Just like before we must account for zero argument methods.
 		if(!check(RIGHT_PAREN))
@@ -319,9 +346,9 @@ class Parser
 				parameters.add(consume(IDENTIFIER, "Expect parameter name,"));	
 			} while(match(COMMA));
 		}
-		consume(RIGHT_PAREN,"Expect ')' after parameters.");
+		expect(RIGHT_PAREN,"Expect ')' after parameters.");
 
-		consume(LEFT_BRACE, "Expect '{' before " + kind + " body.");
+		expect(LEFT_BRACE, "Expect '{' before " + kind + " body.");
 		///Wrap the rest up in a nice block. block() assumes the token has already been consumed.
 		List<Stmt> body = block();
 		return new Stmt.Function(name, parameters, body);
@@ -342,7 +369,7 @@ class Parser
 			statements.add(declaration());
 		}
 
-		consume(RIGHT_BRACE, "Expect '}' after block.");
+		expect(RIGHT_BRACE, "Expect '}' after block.");
 
 		return statements;
 	}
@@ -456,6 +483,21 @@ class Parser
 			return null;
 		}
 	}
+	/***
+	 * A declaration at the top level. Code nested too deep for the Java stack is a syntax error, caught out here
+	 * where the stack is back to nothing so there's room to report it.
+	 */
+	private Stmt topLevel()
+	{
+		try{
+			return declaration();
+		} catch(StackOverflowError overflow) {
+			error(tokens.token(), "Code nested too deep to parse.");
+			synchronize();
+			return null;
+		}
+	}
+
 	/***
 	 * Class parser
 	 * After we consume class keyword,we look to consume: 
@@ -468,11 +510,11 @@ class Parser
 		Expr.Variable superclass = null;
 		if(match(LESS))
 		{
-			consume(IDENTIFIER, "Expect superclass name.");
+			expect(IDENTIFIER, "Expect superclass name.");
 			superclass = new Expr.Variable(previous());
 		}
 
-		consume(LEFT_BRACE, "Expect '{' before class body");
+		expect(LEFT_BRACE, "Expect '{' before class body");
 
 		List<Stmt.Function> methods = new ArrayList<>();
 		while(!check(RIGHT_BRACE) && !isAtEnd())
@@ -480,7 +522,7 @@ class Parser
 			methods.add(function("method"));
 		}
 
-		consume(RIGHT_BRACE,"Expect '}' after class body.");
+		expect(RIGHT_BRACE,"Expect '}' after class body.");
 
 		return new Stmt.Class(name, superclass, methods);
 	}
@@ -702,10 +744,13 @@ class Parser
 	 	if(match(SUPER))
 	 	{
 	 		Token keyword = previous();
-	 		consume(DOT, "Expect '.' after 'super'.");
+	 		expect(DOT, "Expect '.' after 'super'.");
 	 		Token method = consume(IDENTIFIER,
 	 			"Expect superclass method name.");
-	 		return new Expr.Super(keyword, method);
+	 		Expr.Super expr = new Expr.Super(keyword, method);
+	 		//super.method binds to this, so the node gets a This of its own to find it with.
+	 		expr.receiver = new Expr.This(tokens.make(THIS, Symbol.THIS, keyword.line));
+	 		return expr;
 	 	}
 	 	//If we match a this, return a this expression with the previous token.
 	 	if(match(THIS))
@@ -720,7 +765,7 @@ class Parser
 	 	if(match(LEFT_PAREN))
 	 	{
 	 		Expr expr = expression();
-	 		consume(RIGHT_PAREN, "Expect ')' after expression.");
+	 		expect(RIGHT_PAREN, "Expect ')' after expression.");
 	 		return new Expr.Grouping(expr);
 	 	}
 
@@ -771,9 +816,21 @@ class Parser
 	*/
 	private Token consume(TokenType type, String message)
 	{	
+		expect(type, message);
+		return previous();
+	}
+
+	/***
+	 * consume() for when the token itself isn't needed, like a ';'. Saves making a Token for it.
+	 */
+	private void expect(TokenType type, String message)
+	{
 		//If type matches the next token, we continue. Otherwise we will throw an error
 		if(check(type))
-			return advance();
+		{
+			advance();
+			return;
+		}
 
 		throw error(peek(), message);
 	}
@@ -789,30 +846,28 @@ class Parser
 	{
 		if(isAtEnd())
 			return false;
-		return peek().type == type;
+		return tokens.type() == type;
 	}
 	
 	/***
 	 * Like the scanner's advance() but on a token level rather than a character level.
-	 * Increments current by one.
-	 * @return the previous token.
+	 * Moves on to the next token, scanning it.
 	 */
-	private Token advance()
+	private void advance()
 	{
 		if(!isAtEnd())
 		{
-			current++;
+			tokens.advance();
 		}
-		return previous();
 	}
 
 	/***
-	 * We know we are at the end of the code, if the next token in tokens is an EOF.
+	 * We know we are at the end of the code, if the next token is an EOF.
 	 * @return true if at end, false if not
 	 */
 	private boolean isAtEnd()
 	{
-		return peek().type == EOF;
+		return tokens.type() == EOF;
 	}
 
 	/***
@@ -820,7 +875,7 @@ class Parser
 	 */
 	private Token peek()
 	{
-		return tokens.get(current);
+		return tokens.token();
 	}
 
 	/***
@@ -828,7 +883,7 @@ class Parser
 	 */
 	private Token previous()
 	{
-		return tokens.get(current-1);
+		return tokens.previous();
 	}
 
 	//Error method, ParseError is a static class in Parser.java
@@ -873,10 +928,10 @@ class Parser
 		while(!isAtEnd())
 		{	
 			//If last type was a ; we can assume we're at a new stmnt
-			if(previous().type == SEMICOLON)
+			if(tokens.previousType() == SEMICOLON)
 				return;
 
-			switch(peek().type)
+			switch(tokens.type())
 			{
 				//New statements can also start with these.
 				//Especially: for, if, return, and var
@@ -1,5 +1,6 @@
 package JavaInterpreter.Milk;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -7,15 +8,9 @@ import java.util.Stack;
 
 class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void>
 {
-	private final Interpreter interpreter;
-	private final Stack<Map<String,Boolean>> scopes = new Stack<>();
+	private final Stack<Map<Symbol,Local>> scopes = new Stack<>();
 	private FunctionType currentFunction = FunctionType.NONE;
 
-	Resolver(Interpreter interpreter)	
-	{
-		this.interpreter = interpreter;
-	}
-
 	private enum FunctionType{
 		NONE,
 		FUNCTION,
@@ -30,6 +25,58 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void>
 	}
 
 	private ClassType currentClass = ClassType.NONE;
+
+	/***
+	 * What the Resolver knows about a local variable.
+	 * slot is the variable's index in its function's frame. defined marks that its ready.
+	 * captured gets set when a closure uses it. That can happen after the uses in its own function were resolved,
+	 * so they're kept and marked when the variable goes out of scope.
+	 */
+	private static class Local
+	{
+		final int slot;
+		final Frame frame;
+		boolean defined = false;
+		boolean captured = false;
+		//The Var, Function or Class that declared it. Null for parameters, this and super.
+		Stmt declaration = null;
+		//The Variables, Assigns and Thises that use it from its own function.
+		final List<Expr> uses = new ArrayList<>();
+
+		Local(int slot, Frame frame)
+		{
+			this.slot = slot;
+			this.frame = frame;
+		}
+	}
+
+	/***
+	 * The function being resolved (or the top level code) and what its frame needs:
+	 * a slot for each local (blocks that are done give theirs back) and the upvalues it captures.
+	 * Each capture is a slot of the enclosing function's frame, or ~index of one of the enclosing function's own upvalues.
+	 */
+	private static class Frame
+	{
+		final Frame enclosing;
+		int next = 0;
+		int size = 0;
+		final List<Integer> captures = new ArrayList<>();
+
+		Frame(Frame enclosing)
+		{
+			this.enclosing = enclosing;
+		}
+	}
+
+	private Frame frame = new Frame(null);
+	
+	/***
+	 * @return how many slots the top level code needs, for the locals in its blocks.
+	 */
+	int frameSize()
+	{
+		return frame.size;
+	}
 	
 	/***
 	 * Runs through a list and resolves each one.
@@ -51,16 +98,33 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void>
 	{
 		FunctionType enclosingFunction = currentFunction;
 		currentFunction = type;
+		Frame enclosingFrame = frame;
+		frame = new Frame(enclosingFrame);
 
 		beginScope();
+		//A method's "this" is the first slot of its own environment, the parameters come after it.
+		if(type == FunctionType.METHOD || type == FunctionType.INITIALIZER)
+			declareKeyword(Symbol.THIS);
 		for(Token param: function.params)
 		{
-			declare(param);
+			declare(param, null);
 			define(param);
 		}
 		resolve(function.body);
+
+		//Captured parameters (and this) get put in cells when the call starts.
+		List<Integer> boxed = new ArrayList<>();
+		for(Local local : scopes.peek().values())
+		{
+			if(local.captured && local.declaration == null)
+				boxed.add(local.slot);
+		}
 		endScope();
 
+		function.frameSize = frame.size;
+		function.boxed = toArray(boxed);
+		function.captures = toArray(frame.captures);
+		frame = enclosingFrame;
 		currentFunction = enclosingFunction;
 	}
 	
@@ -84,36 +148,100 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void>
 	 */
 	private void beginScope()
 	{
-		scopes.push(new HashMap<String, Boolean>());
+		scopes.push(new HashMap<Symbol, Local>());
 	}
 
 	/***
 	 * To exit a scope, pop the most recent one off and you good.
 	 * AKA pop from scopes.
+	 * Its slots are free for the next block, and nothing can capture its locals anymore, so the captured ones get marked.
 	 */
 	private void endScope()
 	{
-		scopes.pop();
+		Map<Symbol, Local> scope = scopes.pop();
+		frame.next -= scope.size();
+		for(Local local : scope.values())
+		{
+			if(local.captured)
+				markCaptured(local);
+		}
+	}
+
+	/***
+	 * Tells the local's declaration and uses that its value lives in a cell.
+	 */
+	private static void markCaptured(Local local)
+	{
+		if(local.declaration instanceof Stmt.Var)
+			((Stmt.Var) local.declaration).captured = true;
+		else if(local.declaration instanceof Stmt.Function)
+			((Stmt.Function) local.declaration).captured = true;
+		else if(local.declaration instanceof Stmt.Class)
+			((Stmt.Class) local.declaration).captured = true;
+
+		for(Expr use : local.uses)
+		{
+			if(use instanceof Expr.Variable)
+				((Expr.Variable) use).captured = true;
+			else if(use instanceof Expr.Assign)
+				((Expr.Assign) use).captured = true;
+			else
+				((Expr.This) use).captured = true;
+		}
+	}
+
+	private static int[] toArray(List<Integer> list)
+	{
+		int[] array = new int[list.size()];
+		for(int i = 0; i < array.length; i++)
+		{
+			array[i] = list.get(i);
+		}
+		return array;
 	}
 
 	/***
 	 * Method that adds variable to the innermost scope.
 	 * Variable shadows any outer one. 
 	 * 
+	 * @return the slot its been given, -1 for a global.
 	 */
-	private void declare(Token name)
+	private int declare(Token name, Stmt declaration)
 	{
 		if(scopes.isEmpty())
-			return;
-		Map<String, Boolean> scope = scopes.peek();
+			return -1;
+		Map<Symbol, Local> scope = scopes.peek();
 		//Error handling for duplicates
-		if(scope.containsKey(name.lexeme))
+		if(scope.containsKey(name.symbol))
 		{
 			Milk.error(name, 
 				"Variable with this name already declared in this scope.");
+			return -1;
 		}
-		//Put it in as false to signify "not ready yet"
-		scopes.put(name.lexeme, false);
+		//Locals get the next free slot of their function's frame. Not defined signifies "not ready yet"
+		Local local = newLocal();
+		local.declaration = declaration;
+		scope.put(name.symbol, local);
+		return local.slot;
+	}
+
+	private Local newLocal()
+	{
+		Local local = new Local(frame.next++, frame);
+		frame.size = Math.max(frame.size, frame.next);
+		return local;
+	}
+
+	/***
+	 * Adds a variable the user never declares (this and super) to the innermost scope.
+	 * They are ready right away.
+	 */
+	private Local declareKeyword(Symbol name)
+	{
+		Local local = newLocal();
+		local.defined = true;
+		scopes.peek().put(name, local);
+		return local;
 	}
 
 	/***
@@ -123,36 +251,88 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void>
 	{
 		if(scopes.isEmpty())
 			return;
-		scopes.peek().put(name.lexeme,true);
+		scopes.peek().get(name.symbol).defined = true;
 	}
 	
 	/***
 	 * Start at the innermost scope and start looking for the variable.
+	 * @return the variable, or null if its global.
 	 */
-	private void resolveLocal(Expr expr, Token name)
+	private Local resolveLocal(Token name)
 	{
 		for(int i = scopes.size()-1 ; i>= 0; i--)
 		{
-			if(scopes.get(i).containsKey(name.lexeme))
-			{
-				//If variable is found we pass in the # of scopes and resolve it yeet.
-				interpreter.resolve(expr,scopes.size()- 1 - i);
-				return;
-			}
+			Local local = scopes.get(i).get(name.symbol);
+			if(local != null)
+				return local;
 		}
+		return null;
+	}
+
+	/***
+	 * Where use finds the local from the function its in. The caller stores it right on the node,
+	 * so the Interpreter never has to look it up.
+	 * @return the local's slot if its in the same function, otherwise the index of the upvalue for it.
+	 */
+	private int slotOf(Expr use, Local local)
+	{
+		if(local.frame == frame)
+		{
+			local.uses.add(use);
+			return local.slot;
+		}
+		return upvalue(frame, local);
+	}
+
+	/***
+	 * Gives function an upvalue for local, which belongs to one of the functions around it.
+	 * Every function in between gets one too, so the closures can hand the cell down.
+	 * @return the upvalue's index.
+	 */
+	private static int upvalue(Frame function, Local local)
+	{
+		local.captured = true;
+		int capture = function.enclosing == local.frame
+			? local.slot : ~upvalue(function.enclosing, local);
+
+		int index = function.captures.indexOf(capture);
+		if(index == -1)
+		{
+			index = function.captures.size();
+			function.captures.add(capture);
+		}
+		return index;
 	}
 	/***
 	 * Block Resolver.
 	 * Begins a scope, traverses into the statements within the block, and then discards the scope.
+	 * A block that declares nothing doesn't get a scope, it runs in the one around it.
 	 */
 	@Override
 	public Void visitBlockStmt(Stmt.Block stmt)
 	{
-		beginScope();
+		boolean scoped = declares(stmt.statements);
+		if(scoped)
+			beginScope();
 		resolve(stmt.statements);
-		endScope();
+		if(scoped)
+			endScope();
 		return null;
 	}
+
+	/***
+	 * @return if any of the statements puts a name in the scope they're in.
+	 */
+	private static boolean declares(List<Stmt> statements)
+	{
+		for(Stmt statement : statements)
+		{
+			if(statement instanceof Stmt.Var || statement instanceof Stmt.Function
+				|| statement instanceof Stmt.Class)
+				return true;
+		}
+		return false;
+	}
 	
 	/***
 	 * Class Visitor.
@@ -162,7 +342,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void>
 	{	
 		ClassType enclosingClass = currentClass;
 		currentClass = ClassType.CLASS;
-		declare(stmt.name);
+		stmt.slot = declare(stmt.name, stmt);
 
 		if(stmt.superclass != null)
 		{
@@ -175,26 +355,24 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void>
 		if(stmt.superclass != null)
 		{
 			beginScope();
-			scopes.peek().put("super", true);
+			//Only methods use super, so its always captured.
+			Local local = declareKeyword(Symbol.SUPER);
+			local.captured = true;
+			stmt.superSlot = local.slot;
 		}
 
-		beginScope();
-		scopes.peek().put("this", true);
-
 		//Iterate through each method and call resolveFunction on it.
 		for(Stmt.Function method : stmt.methods)
 		{
 			FunctionType declaration = FunctionType.METHOD;
 			//For constructors.
-			if(method.name.lexeme.equals("init"))
+			if(method.name.symbol == Symbol.INIT)
 			{
 				declaration = FunctionType.INITIALIZER;
 			}
 			resolveFunction(method, declaration);
 		}
 
-		endScope();
-
 		if(stmt.superclass != null)
 			endScope();
 
@@ -213,6 +391,27 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void>
 		return null;
 	}
 	
+	/***
+	 * For Resolver
+	 * A var in the initializer gets one scope for the whole loop, like the block around it used to.
+	 */
+	@Override
+	public Void visitForStmt(Stmt.For stmt)
+	{
+		boolean scoped = stmt.initializer instanceof Stmt.Var;
+		if(scoped)
+			beginScope();
+		if(stmt.initializer != null)
+			resolve(stmt.initializer);
+		resolve(stmt.condition);
+		if(stmt.increment != null)
+			resolve(stmt.increment);
+		resolve(stmt.body);
+		if(scoped)
+			endScope();
+		return null;
+	}
+
 	/***
 	 * Function Resolver.
 	 * First we resolve the function name, then its parameters.
@@ -220,7 +419,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void>
 	@Override
 	public Void visitFunctionStmt(Stmt.Function stmt)
 	{
-		declare(stmt.name);
+		stmt.slot = declare(stmt.name, stmt);
 		define(stmt.name);
 
 		resolveFunction(stmt, FunctionType.FUNCTION);
@@ -268,6 +467,9 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void>
 					"Cannot return a value from an initializer.");
 			}
 			resolve(stmt.value);
+
+			//Nothing is left to do in this function after the call, so its frame can be reused.
+			stmt.tailCall = stmt.value instanceof Expr.Call;
 		}
 
 		return null;
@@ -283,7 +485,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void>
 	@Override
 	public Void visitVarStmt(Stmt.Var stmt)
 	{
-		declare(stmt.name);
+		stmt.slot = declare(stmt.name, stmt);
 		if(stmt.initializer != null)
 		{
 			resolve(stmt.initializer);
@@ -312,7 +514,12 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void>
 	public Void visitAssignExpr(Expr.Assign expr)
 	{
 		resolve(expr.value);
-		resolveLocal(expr, expr.name);
+		Local local = resolveLocal(expr.name);
+		if(local != null)
+		{
+			expr.upvalue = local.frame != frame;
+			expr.slot = slotOf(expr, local);
+		}
 		return null;
 	}
 
@@ -414,7 +621,12 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void>
 			Milk.error(expr.keyword,
 				"Cannot use 'super' in a class with no superclass");
 		}
-		resolveLocal(expr, expr.keyword);
+		Local local = resolveLocal(expr.keyword);
+		if(local != null)
+			expr.upvalue = upvalue(frame, local);
+
+		//The This the Parser gave it, for the receiver.
+		resolve(expr.receiver);
 		return null;
 	}
 
@@ -427,7 +639,9 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void>
 				"Cannot use 'this' outside of a class.");
 			return null;
 		}
-		resolveLocal(expr, expr.keyword);
+		Local local = resolveLocal(expr.keyword);
+		expr.upvalue = local.frame != frame;
+		expr.slot = slotOf(expr, local);
 		return null;
 	}
 	
@@ -449,14 +663,20 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void>
 	public Void visitVariableExpr(Expr.Variable expr)
 	{
 		if(!scopes.isEmpty() &&
-			scopes.peek().get(expr.name.lexeme)==Boolean.FALSE)
+			scopes.peek().containsKey(expr.name.symbol) &&
+			!scopes.peek().get(expr.name.symbol).defined)
 		{
 			//Occurs if the variable is declared, but not defined.
 			Milk.error(expr.name,
 				"Cannot read local variable in its own initializer.");
 		}
 
-		resolveLocal(expr,expr.name);
+		Local local = resolveLocal(expr.name);
+		if(local != null)
+		{
+			expr.upvalue = local.frame != frame;
+			expr.slot = slotOf(expr, local);
+		}
 		return null;
 	}
 }
\ No newline at end of file
@@ -2,12 +2,24 @@ package JavaInterpreter.Milk;
 
 class RuntimeError extends RuntimeException
 {
+	private static final long serialVersionUID = 1L;
+
 	//Class tracks the token that identifies where in the user's code the error came from
 	final Token token;
+	//The line the error is reported at. The VM only knows lines, it has no tokens.
+	final int line;
 
 	RuntimeError(Token token, String message)
 	{
 		super(message);
 		this.token = token;
+		this.line = token.line;
+	}
+
+	RuntimeError(int line, String message)
+	{
+		super(message);
+		this.token = null;
+		this.line = line;
 	}
-}
\ No newline at end of file
+}
@@ -12,23 +12,53 @@ package JavaInterpreter.Milk;
  Regular Expressions: Search pattern for strings. Abbreviated is regex.
  Regex rules of Milk match the rules of C. 
 
+ The scanner doesn't scan the whole file up front. It reads the source through a small buffer and
+ only scans a token when the parser asks for the next one, so a big script never sits in memory
+ as one String plus a list of every token in it. Tokens go straight into the parser's TokenBuffer.
+ A token is just where it starts and how long it is, its text stays in the buffer for as long as the TokenBuffer has it.
+
 */
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import static JavaInterpreter.Milk.TokenType.*;
 
 class Scanner
 {
-	private final String source;
-	private final List<Token> tokens = new ArrayList<>();
-	
+	private final Reader source;
+	//The source that's been read in and is still needed is buffer[0] up to buffer[limit], buffer[0] is at offset base.
+	//The part not scanned yet starts at buffer[position].
+	private char[] buffer = new char[8192];
+	private int base;
+	private int position = 0;
+	private int limit = 0;
+	//Where the token the parser is on starts. The buffer keeps everything from there on, so its text and the text of
+	//the token being scanned are both still there if the TokenBuffer needs to make their lexemes.
+	private int kept;
+	//Where scanToken() puts the token it finds. It doesn't find one if it only skipped whitespace or a comment.
+	private TokenBuffer tokens;
+	private int slot;
+	private boolean found;
+
+	//Identifiers and keywords seen so far, an open addressing hash table on their characters.
+	//That way an identifier's String is only made the first time it shows up, after that its Symbol is found from the chars.
+	private Symbol[] names = new Symbol[64];
+	//TokenType of each name, IDENTIFIER unless it's a keyword.
+	private TokenType[] nameTypes = new TokenType[64];
+	private int nameCount = 0;
+
 	//These data values keep track of where we are in the source code.
-	private int start = 0;
-	private int current = 0;
 	private int line = 1;
+	//How far into the source the scanner is, and where the lexeme being scanned starts.
+	//A string can go over more than one line, so the line it starts on is kept too.
+	private int offset = 0;
+	private int start = 0;
+	private int startLine = 1;
 
 	//Map of all alphanumeric keywords, it really is alot.
 	private static final Map<String, TokenType> keywords;
@@ -58,25 +88,60 @@ class Scanner
 	 * @param source the given code
 	 */
 	Scanner(String source)
+	{
+		this(new StringReader(source));
+	}
+
+	/***
+	 * Scans code as it's read from source. The scanner doesn't close it.
+	 * @param source where the code comes from
+	 */
+	Scanner(Reader source)
+	{
+		this(source, 1, 0);
+	}
+
+	/***
+	 * Scans code that starts partway into a file, IncrementalParser uses it to scan just the part that changed.
+	 * @param line the line the code starts on
+	 * @param offset where the code starts in the file, token offsets count from the start of the file.
+	 */
+	Scanner(Reader source, int line, int offset)
 	{
 		this.source = source;
+		this.line = line;
+		this.offset = offset;
+		this.base = offset;
+		this.kept = offset;
+		for(Map.Entry<String, TokenType> keyword : keywords.entrySet())
+		{
+			char[] name = keyword.getKey().toCharArray();
+			nameTypes[intern(name, 0, name.length)] = keyword.getValue();
+		}
 	}
 
 	/***
 	 * Scanner method. 
 	 * <p>
-	 * The scanner works its way through the code and emits tokens until it reaches the end. 
+	 * The scanner works its way through the code until it has the next token, and puts it in slot of tokens.
+	 * Once it runs out of code it emits EOF, every time it's asked.
 	 */
-	List<Token> scanTokens()
+	void scan(TokenBuffer tokens, int slot)
 	{
+		this.tokens = tokens;
+		this.slot = slot;
+		found = false;
 		while(!isAtEnd())
 		{
-			start = current;
+			start = offset;
+			startLine = line;
 			scanToken();
+			if(found)
+				return;
 		}
-		//Token(TokenType type, String lexeme, Object literal, int line)
-		tokens.add(new Token(EOF, "", null, line));
-		return tokens;
+		start = offset;
+		startLine = line;
+		addToken(EOF);
 	}
 
 	/***
@@ -84,7 +149,47 @@ class Scanner
 	 */
 	private boolean isAtEnd()
 	{
-		return current >= source.length();
+		return !fill(1);
+	}
+
+	/***
+	 * Reads more of the source if there's less than count characters left in the buffer.
+	 * @return true if there's at least count characters to look at.
+	 */
+	private boolean fill(int count)
+	{
+		if(limit - position >= count)
+			return true;
+
+		//Move what's still needed to the front and read in after it.
+		int from = kept - base;
+		System.arraycopy(buffer, from, buffer, 0, limit - from);
+		base = kept;
+		position -= from;
+		limit -= from;
+		try{
+			while(limit - position < count)
+			{
+				//Only if the two tokens are longer than the buffer.
+				if(limit == buffer.length)
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				int read = source.read(buffer, limit, buffer.length - limit);
+				if(read < 0)
+					return false;
+				limit += read;
+			}
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return true;
+	}
+
+	/***
+	 * @return the text of a token the TokenBuffer has, length characters from start in the source.
+	 */
+	String text(int start, int length)
+	{
+		return new String(buffer, start - base, length);
 	}
 
 	/*** 
@@ -222,7 +327,7 @@ class Scanner
 	/***
 	 * Method that deals with strings
 	 * It keeps processing until it reaches a " or EOF (which is an error).
-	 * By calling advance() in the while loop, the scanner updates current while retaining the start position.
+	 * By calling advance() in the while loop, the scanner keeps going through the lexeme, quotes included.
 	 * Multi lined strings are allowed, but line must get that ++.
 	 * When adding the token we add the actual string value as well. It's for the interpreter.
 	 */
@@ -251,7 +356,7 @@ class Scanner
 		//Cut off the "" in the string statemen
 		//When creating the token, we also produce the actual string value
 		//that will be used later.
-		String value = source.substring(start + 1, current-1);
+		String value = new String(buffer, start - base + 1, offset - start - 2);
 		addToken(STRING, value);
 	}
 	/***
@@ -260,6 +365,7 @@ class Scanner
 	 * Then it looks for a '.' followed by a number, indicating a decimal value.
 	 * Finally adds the token with a parsed double.
 	 * Milk is dynamically typed so 
+	 * Whole numbers short enough to be exact go in as a Long instead, see Numbers.
 	 */
 	private void number()
 	{	
@@ -282,14 +388,25 @@ class Scanner
 				advance();
 			}
 		}
+		//Up to 15 digits is always under 2^53.
+		else if(offset - start <= 15)
+		{
+			long value = 0;
+			for(int i = start - base; i < position; i++)
+			{
+				value = value * 10 + (buffer[i] - '0');
+			}
+			addToken(NUMBER, value);
+			return;
+		}
 
 		addToken(NUMBER, 
-			Double.parseDouble(source.substring(start,current)));
+			Double.parseDouble(new String(buffer, start - base, offset - start)));
 	}
 
 	/***
 	 * Private method used for identifiers. 
-	 * Initial loop finds the entire identifier name. Like before, it uses advance() to update current, but retain initial start.
+	 * Initial loop finds the entire identifier name. Like before, it uses advance() to add each character to the lexeme.
 	 * Checks to see if the HashMap, keywords, contains the recently found identifier.
 	 * If so, we use the keyword's token type. Otherwise use the user-defined. 
 	 */
@@ -304,14 +421,87 @@ class Scanner
 			advance();
 		}
 
-		String text = source.substring(start,current);
+		int name = intern(buffer, start - base, offset - start);
+		tokens.put(slot, nameTypes[name], offset - start, names[name], null, line, start, startLine);
+		kept = start;
+		found = true;
+	}
+
+	/***
+	 * Looks up the name that's length chars of chars from from in names, adding its Symbol as an IDENTIFIER if it isn't there.
+	 * @return its index in names.
+	 */
+	private int intern(char[] chars, int from, int length)
+	{
+		int hash = 0;
+		for(int i = from; i < from + length; i++)
+		{
+			hash = 31 * hash + chars[i];
+		}
+
+		int mask = names.length - 1;
+		int index = hash & mask;
+		while(names[index] != null)
+		{
+			if(sameName(names[index].name, chars, from, length))
+				return index;
+			index = (index + 1) & mask;
+		}
+
+		names[index] = Symbol.of(new String(chars, from, length));
+		nameTypes[index] = IDENTIFIER;
+		nameCount++;
+		//Keep it at most half full, so it never fills up and the probes stay short.
+		if(nameCount * 2 > names.length)
+		{
+			Symbol name = names[index];
+			grow();
+			return find(name);
+		}
+		return index;
+	}
+
+	private static boolean sameName(String name, char[] chars, int from, int length)
+	{
+		if(name.length() != length)
+			return false;
+		for(int i = 0; i < length; i++)
+		{
+			if(name.charAt(i) != chars[from + i])
+				return false;
+		}
+		return true;
+	}
+
+	private void grow()
+	{
+		Symbol[] oldNames = names;
+		TokenType[] oldTypes = nameTypes;
+		names = new Symbol[oldNames.length * 2];
+		nameTypes = new TokenType[oldNames.length * 2];
+		for(int i = 0; i < oldNames.length; i++)
+		{
+			if(oldNames[i] != null)
+			{
+				int index = find(oldNames[i]);
+				names[index] = oldNames[i];
+				nameTypes[index] = oldTypes[i];
+			}
+		}
+	}
 
-		TokenType type = keywords.get(text);
-		if(type==null)
+	/***
+	 * @return the index name is at in names, or the empty one it would go in.
+	 */
+	private int find(Symbol name)
+	{
+		int mask = names.length - 1;
+		int index = name.hashCode() & mask;
+		while(names[index] != null && names[index] != name)
 		{
-			type = IDENTIFIER;
+			index = (index + 1) & mask;
 		}
-		addToken(type);
+		return index;
 	}
 
 	/***
@@ -320,8 +510,9 @@ class Scanner
 	 */
 	private char advance()
 	{
-		current++;
-		return source.charAt(current-1);
+		fill(1);
+		offset++;
+		return buffer[position++];
 	}
 
 	//Helper method.
@@ -337,8 +528,8 @@ class Scanner
 		addToken(type,null);
 	}
 
-	//Adds the token to the list
-	//Grabs text of the current lexeme and creates a new token for it
+	//Hands the token to the TokenBuffer
+	//Its text stays in the buffer, the TokenBuffer makes the String if it's needed
 	/***
 	 * 
 	 * @param type the TokenType
@@ -346,8 +537,9 @@ class Scanner
 	 */
 	private void addToken(TokenType type, Object literal)
 	{
-		String text = source.substring(start,current);
-		tokens.add(new Token(type, text, literal, line));
+		tokens.put(slot, type, offset - start, null, literal, line, start, startLine);
+		kept = start;
+		found = true;
 	}
 
 	/***
@@ -364,12 +556,12 @@ class Scanner
 		{
 			return false;
 		}
-		if(source.charAt(current) != expected) 
+		if(buffer[position] != expected) 
 		{
 			return false;
 		}
 
-		current++;
+		advance();
 		return true;
 	}
 	/***
@@ -385,7 +577,7 @@ class Scanner
 			return '\0';
 		}
 
-		return source.charAt(current);
+		return buffer[position];
 	}
 	/***
 	 Lookahead method that checks the character after current. Used to 
@@ -398,12 +590,12 @@ class Scanner
 	*/
 	private char peekNext()
 	{
-		if(current + 1 >= source.length())
+		if(!fill(2))
 		{
 			return '\0';
 		}
 
-		return source.charAt(current+1);
+		return buffer[position+1];
 	}
 	
 	/***
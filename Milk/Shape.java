@@ -0,0 +1,83 @@
+package JavaInterpreter.Milk;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+/***
+ * The layout of an instance's fields, shared by every instance that got the same fields in the same order.
+ * (Also known as a hidden class.)
+ *
+ * An instance only keeps an array of values and its shape, the shape knows which slot of the array
+ * each field is in. Every instance starts out with EMPTY, adding a field moves it to the next shape
+ * along a transition. Transitions are remembered, so instances built the same way end up sharing one shape.
+ * They're only held weakly, a shape no instance or cache uses anymore gets collected.
+ *
+ * Each shape copies its parent's slots, so that only goes up to LIMIT fields. An instance that gets more than that
+ * is put in dictionary mode: it gets a shape of its own that fields are just added to, and that's never cached.
+ */
+class Shape
+{
+	//Most fields a shared shape has.
+	static final int LIMIT = 64;
+
+	static final Shape EMPTY = new Shape(new HashMap<>(), false);
+
+	//Field name to its slot.
+	private final Map<Symbol, Integer> slots;
+	private final Map<Symbol, WeakReference<Shape>> transitions;
+	//How many fields instances with this shape have. Only changes in dictionary mode.
+	int size;
+	//True if this shape belongs to one instance and changes as it gets fields.
+	final boolean dictionary;
+
+	private Shape(Map<Symbol, Integer> slots, boolean dictionary)
+	{
+		this.slots = slots;
+		this.size = slots.size();
+		this.dictionary = dictionary;
+		this.transitions = dictionary ? null : new HashMap<>();
+	}
+
+	/***
+	 * @return the slot of the field, or -1 if this shape doesn't have it.
+	 */
+	int slotOf(Symbol name)
+	{
+		Integer slot = slots.get(name);
+		if(slot == null)
+			return -1;
+		return slot;
+	}
+
+	/***
+	 * @return the shape with the field added after the existing ones, in slot number size.
+	 * In dictionary mode that's this shape, with the field added.
+	 */
+	Shape with(Symbol name)
+	{
+		if(dictionary)
+		{
+			slots.put(name, size++);
+			return this;
+		}
+
+		if(size == LIMIT)
+			return new Shape(copyWith(name), true);
+
+		WeakReference<Shape> reference = transitions.get(name);
+		Shape next = reference == null ? null : reference.get();
+		if(next == null)
+		{
+			next = new Shape(copyWith(name), false);
+			transitions.put(name, new WeakReference<>(next));
+		}
+		return next;
+	}
+
+	private Map<Symbol, Integer> copyWith(Symbol name)
+	{
+		Map<Symbol, Integer> nextSlots = new HashMap<>(slots);
+		nextSlots.put(name, size);
+		return nextSlots;
+	}
+}
@@ -7,6 +7,7 @@ abstract class Stmt {
     R visitBlockStmt(Block stmt);
     R visitClassStmt(Class stmt);
     R visitExpressionStmt(Expression stmt);
+    R visitForStmt(For stmt);
     R visitFunctionStmt(Function stmt);
     R visitIfStmt(If stmt);
     R visitPrintStmt(Print stmt);
@@ -36,6 +37,10 @@ abstract class Stmt {
     final Expr.Variable superclass;
     final List<Stmt.Function> methods;
 
+    int slot = -1;
+    boolean captured = false;
+    int superSlot = 0;
+
     <R> R accept(Visitor<R> visitor) {
       return visitor.visitClassStmt(this);
     }
@@ -51,6 +56,23 @@ abstract class Stmt {
       return visitor.visitExpressionStmt(this);
     }
   }
+  static class For extends Stmt {
+    For(Stmt initializer, Expr condition, Expr increment, Stmt body) {
+      this.initializer = initializer;
+      this.condition = condition;
+      this.increment = increment;
+      this.body = body;
+    }
+
+    final Stmt initializer;
+    final Expr condition;
+    final Expr increment;
+    final Stmt body;
+
+    <R> R accept(Visitor<R> visitor) {
+      return visitor.visitForStmt(this);
+    }
+  }
   static class Function extends Stmt {
     Function(Token name, List<Token> params, List<Stmt> body) {
       this.name = name;
@@ -62,6 +84,17 @@ abstract class Stmt {
     final List<Token> params;
     final List<Stmt> body;
 
+    int slot = -1;
+    boolean captured = false;
+    int frameSize = 0;
+    int[] boxed = null;
+    int[] captures = null;
+    int calls = 0;
+    Jit.Code compiled = null;
+    boolean uncompilable = false;
+    Environment[] pool = null;
+    int pooled = 0;
+
     <R> R accept(Visitor<R> visitor) {
       return visitor.visitFunctionStmt(this);
     }
@@ -101,6 +134,8 @@ abstract class Stmt {
     final Token keyword;
     final Expr value;
 
+    boolean tailCall = false;
+
     <R> R accept(Visitor<R> visitor) {
       return visitor.visitReturnStmt(this);
     }
@@ -114,6 +149,9 @@ abstract class Stmt {
     final Token name;
     final Expr initializer;
 
+    int slot = -1;
+    boolean captured = false;
+
     <R> R accept(Visitor<R> visitor) {
       return visitor.visitVarStmt(this);
     }
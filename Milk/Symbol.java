@@ -0,0 +1,57 @@
+package JavaInterpreter.Milk;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+/***
+ * A name, of a variable or a field or a method, interned.
+ *
+ * There's only ever one Symbol for a name, so two names are the same exactly when they're the same Symbol
+ * and comparing them is just ==. The scanner makes them, the Resolver and the runtime key their tables on them instead of Strings.
+ * Its hash is worked out once, and each Symbol also gets a small number of its own, id, for tables that are just arrays.
+ */
+final class Symbol
+{
+	private static final ConcurrentHashMap<String, Symbol> table = new ConcurrentHashMap<>();
+	private static final AtomicInteger count = new AtomicInteger();
+
+	//Names the interpreter looks for itself.
+	static final Symbol INIT = of("init");
+	static final Symbol THIS = of("this");
+	static final Symbol SUPER = of("super");
+
+	final String name;
+	//Symbols are numbered from 0 in the order they're made.
+	final int id;
+	private final int hash;
+
+	private Symbol(String name)
+	{
+		this.name = name;
+		this.id = count.getAndIncrement();
+		this.hash = name.hashCode();
+	}
+
+	/***
+	 * @return the one Symbol for name.
+	 */
+	static Symbol of(String name)
+	{
+		Symbol symbol = table.get(name);
+		if(symbol != null)
+			return symbol;
+		return table.computeIfAbsent(name, Symbol::new);
+	}
+
+	//equals() is left as ==, which is right since there's one Symbol per name.
+	@Override
+	public int hashCode()
+	{
+		return hash;
+	}
+
+	@Override
+	public String toString()
+	{
+		return name;
+	}
+}
@@ -8,21 +8,26 @@ class Token
 {
 	final TokenType type;
 	final String lexeme;
+	//The interned name, for identifiers and keywords. Null for everything else.
+	final Symbol symbol;
 	final Object literal;
-	final int line;
+	//Not final so IncrementalParser can move tokens it reuses when lines are added or taken out above them.
+	int line;
 	
 	/***
 	 * Token constructor
 	 * 
 	 * @param type The TokenType. Is it a Nil or True or whatever...
 	 * @param lexeme String version of the lexeme.
+	 * @param symbol The lexeme as a Symbol, if its a name.
 	 * @param literal
 	 * @param line The line the token was found on.
 	 */
-	Token(TokenType type, String lexeme, Object literal, int line)
+	Token(TokenType type, String lexeme, Symbol symbol, Object literal, int line)
 	{
 		this.type = type;
 		this.lexeme = lexeme;
+		this.symbol = symbol;
 		this.literal = literal;
 		this.line = line;
 	}
@@ -0,0 +1,158 @@
+package JavaInterpreter.Milk;
+
+import java.util.List;
+
+/***
+ * The tokens the parser is looking at, kept in parallel arrays instead of a Token object each.
+ *
+ * The parser only ever needs the token it's on and the one before it, so there's two slots and they take turns.
+ * The scanner writes each token's type, line, literal, start offset and length straight into a slot, the characters
+ * stay in the scanner's buffer while the token's in a slot.
+ * Most tokens are only checked for their type and then dropped (all the ; and ( and such), so the lexeme String
+ * and the Token are only made for a token the parser asks for. Identifiers and keywords come with their
+ * Symbol already, the scanner interns those.
+ */
+class TokenBuffer
+{
+	private static final int SIZE = 2;
+	private static final TokenType[] TYPES = TokenType.values();
+
+	private final Scanner scanner;
+
+	//TokenType ordinals.
+	private final byte[] types = new byte[SIZE];
+	private final int[] lines = new int[SIZE];
+	//Where each token starts in the source, and the line that's on.
+	private final int[] starts = new int[SIZE];
+	private final int[] startLines = new int[SIZE];
+	private final Object[] literals = new Object[SIZE];
+	//How many chars of the source the lexeme is, from starts[slot].
+	private final int[] lengths = new int[SIZE];
+	private final Symbol[] symbols = new Symbol[SIZE];
+	//Made when they're asked for, null until then.
+	private final String[] lexemes = new String[SIZE];
+	private final Token[] tokens = new Token[SIZE];
+	//Every Token made goes in here too, if there is one. See record().
+	private List<Token> made = null;
+
+	//The slot of the token the parser is on.
+	private int current = 0;
+
+	/***
+	 * Starts out on the first token of the code.
+	 */
+	TokenBuffer(Scanner scanner)
+	{
+		this.scanner = scanner;
+		scanner.scan(this, current);
+	}
+
+	/***
+	 * Moves on to the next token, the one the parser was on becomes the previous one.
+	 */
+	void advance()
+	{
+		current ^= 1;
+		scanner.scan(this, current);
+	}
+
+	/***
+	 * Called by the scanner, fills in a slot. The lexeme is the length chars from start in the source.
+	 * @param symbol the lexeme as a Symbol if its a name, else null.
+	 */
+	void put(int slot, TokenType type, int length, Symbol symbol, Object literal, int line, int start, int startLine)
+	{
+		types[slot] = (byte) type.ordinal();
+		lines[slot] = line;
+		starts[slot] = start;
+		startLines[slot] = startLine;
+		literals[slot] = literal;
+		symbols[slot] = symbol;
+		lexemes[slot] = symbol == null ? null : symbol.name;
+		tokens[slot] = null;
+		lengths[slot] = length;
+	}
+
+	/***
+	 * @return the type of the token the parser is on.
+	 */
+	TokenType type()
+	{
+		return TYPES[types[current]];
+	}
+
+	/***
+	 * @return the type of the token before it.
+	 */
+	TokenType previousType()
+	{
+		return TYPES[types[current ^ 1]];
+	}
+
+	/***
+	 * @return where the token the parser is on starts in the source.
+	 */
+	int start()
+	{
+		return starts[current];
+	}
+
+	/***
+	 * @return the line the token the parser is on starts on. (A Token's line is the one it ends on.)
+	 */
+	int startLine()
+	{
+		return startLines[current];
+	}
+
+	/***
+	 * @return the token the parser is on.
+	 */
+	Token token()
+	{
+		return token(current);
+	}
+
+	/***
+	 * @return the token before it.
+	 */
+	Token previous()
+	{
+		return token(current ^ 1);
+	}
+
+	private Token token(int slot)
+	{
+		if(tokens[slot] == null)
+		{
+			if(lexemes[slot] == null)
+				lexemes[slot] = scanner.text(starts[slot], lengths[slot]);
+			tokens[slot] = new Token(TYPES[types[slot]], lexemes[slot], symbols[slot], literals[slot], lines[slot]);
+			if(made != null)
+				made.add(tokens[slot]);
+		}
+		return tokens[slot];
+	}
+
+	/***
+	 * A token that isn't in the source, for nodes the parser makes up.
+	 */
+	Token make(TokenType type, Symbol symbol, int line)
+	{
+		Token token = new Token(type, symbol.name, symbol, null, line);
+		if(made != null)
+			made.add(token);
+		return token;
+	}
+
+	/***
+	 * From now on every Token made is added to made, so IncrementalParser knows which tokens a declaration has.
+	 * Tokens already made are forgotten, if the parser needs them again they're made again and land in the new list.
+	 */
+	void record(List<Token> made)
+	{
+		this.made = made;
+		tokens[0] = null;
+		tokens[1] = null;
+	}
+}
@@ -0,0 +1,888 @@
+package JavaInterpreter.Milk;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static JavaInterpreter.Milk.OpCode.*;
+/***
+ * A stack-based virtual machine that runs the bytecode the Compiler produces.
+ * It's the alternative to the tree-walking Interpreter, picked with the --vm flag.
+ *
+ * All values live on one operand stack. Each call gets a CallFrame: a window into that
+ * stack that starts with the callee (or this, for methods) followed by the arguments and locals.
+ * Closures reach the locals of their enclosing functions through upvalues, which point into
+ * the stack while the local is alive and take the value with them once it goes away.
+ *
+ * Values are the same Java objects the tree-walker uses (Long or Double, String, Boolean, null),
+ * so printing, equality and truthiness are shared with the Interpreter.
+ */
+class VM
+{
+	/***
+	 * The compiled form of a function: its code and how to call it.
+	 */
+	static class Function
+	{
+		final String name;
+		final int arity;
+		final Chunk chunk = new Chunk();
+		Object[] constants;
+		int upvalueCount = 0;
+		//The most stack slots the function's code can use at once, locals included.
+		int maxStack = 0;
+
+		Function(String name, int arity)
+		{
+			this.name = name;
+			this.arity = arity;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "<fn " + name + ">";
+		}
+	}
+
+	/***
+	 * A function together with the upvalues it closed over. This is what Milk code calls.
+	 */
+	static class Closure
+	{
+		final Function function;
+		final Upvalue[] upvalues;
+
+		Closure(Function function)
+		{
+			this.function = function;
+			this.upvalues = new Upvalue[function.upvalueCount];
+		}
+
+		@Override
+		public String toString()
+		{
+			return function.toString();
+		}
+	}
+
+	/***
+	 * A variable a closure captured.
+	 * While the variable is still on the stack, location is its slot. Once it's closed, location is -1 and the value is in closed.
+	 */
+	static class Upvalue
+	{
+		int location;
+		Object closed;
+		//The next open upvalue further down the stack.
+		Upvalue next;
+
+		Upvalue(int location, Upvalue next)
+		{
+			this.location = location;
+			this.next = next;
+		}
+	}
+
+	/***
+	 * Runtime representation of a class.
+	 * methods includes every inherited method, copied down when the class is created.
+	 */
+	static class Class
+	{
+		final String name;
+		final Map<Symbol, Closure> methods = new HashMap<>();
+		//Only the class's own init, just like the tree-walker's MilkClass.
+		Closure initializer;
+
+		Class(String name)
+		{
+			this.name = name;
+		}
+
+		@Override
+		public String toString()
+		{
+			return name;
+		}
+	}
+
+	static class Instance
+	{
+		private static final Object[] NO_FIELDS = new Object[0];
+
+		final Class klass;
+		//Fields are laid out by the instance's Shape, same as MilkInstance.
+		Shape shape = Shape.EMPTY;
+		Object[] values = NO_FIELDS;
+
+		Instance(Class klass)
+		{
+			this.klass = klass;
+		}
+
+		void set(Symbol name, Object value)
+		{
+			int slot = shape.slotOf(name);
+			if(slot == -1)
+			{
+				slot = shape.size;
+				shape = shape.with(name);
+				if(slot == values.length)
+					values = Arrays.copyOf(values, Math.max(4, slot * 2));
+			}
+			values[slot] = value;
+		}
+
+		@Override
+		public String toString()
+		{
+			return klass.name + " instance";
+		}
+	}
+
+	/***
+	 * A method that was read off an instance without being called right away.
+	 */
+	static class BoundMethod
+	{
+		final Object receiver;
+		final Closure method;
+
+		BoundMethod(Object receiver, Closure method)
+		{
+			this.receiver = receiver;
+			this.method = method;
+		}
+
+		@Override
+		public String toString()
+		{
+			return method.toString();
+		}
+	}
+
+	/***
+	 * One ongoing call.
+	 * base is the stack slot of the frame's slot 0, result is the slot the return value goes to.
+	 */
+	private static class CallFrame
+	{
+		Closure closure;
+		int ip;
+		int base;
+		int result;
+	}
+
+	//Put on the stack by OP_GET_METHOD when the callee turned out to be a field, which has no receiver.
+	private static final Object NO_RECEIVER = new Object();
+
+	final Environment globals = new Environment();
+
+	private Object[] stack = new Object[256];
+	private int sp = 0;
+	private CallFrame[] frames = new CallFrame[64];
+	private int frameCount = 0;
+	//Upvalues still pointing into the stack, highest slot first.
+	private Upvalue openUpvalues = null;
+
+	VM()
+	{
+		Interpreter.defineNatives(globals);
+	}
+
+	/***
+	 * Runs a compiled program. Runtime errors are reported just like the tree-walker does.
+	 */
+	void interpret(Function function)
+	{
+		Closure closure = new Closure(function);
+		try
+		{
+			stack[sp++] = closure;
+			callClosure(closure, 0, 0);
+			run();
+		}
+		catch(RuntimeError error)
+		{
+			Milk.runtimeError(error);
+			Arrays.fill(stack, 0, sp, null);
+			sp = 0;
+			frameCount = 0;
+			openUpvalues = null;
+		}
+	}
+
+	/***
+	 * The main loop: decodes and executes one instruction after another.
+	 * The state of the innermost frame is kept in locals, and saved back before anything that can push or pop frames.
+	 */
+	private void run()
+	{
+		CallFrame frame = frames[frameCount - 1];
+		Object[] stack = this.stack;
+		byte[] code = frame.closure.function.chunk.code;
+		Object[] constants = frame.closure.function.constants;
+		Upvalue[] upvalues = frame.closure.upvalues;
+		int base = frame.base;
+		int ip = frame.ip;
+		int sp = this.sp;
+
+		for(;;)
+		{
+			byte instruction = code[ip++];
+			switch(instruction)
+			{
+				case OP_CONSTANT:
+					stack[sp++] = constants[readShort(code, ip)];
+					ip += 2;
+					break;
+				case OP_NIL:
+					stack[sp++] = null;
+					break;
+				case OP_TRUE:
+					stack[sp++] = true;
+					break;
+				case OP_FALSE:
+					stack[sp++] = false;
+					break;
+				case OP_POP:
+					stack[--sp] = null;
+					break;
+
+				case OP_GET_LOCAL:
+					stack[sp++] = stack[base + readShort(code, ip)];
+					ip += 2;
+					break;
+				case OP_SET_LOCAL:
+					stack[base + readShort(code, ip)] = stack[sp - 1];
+					ip += 2;
+					break;
+				case OP_GET_GLOBAL:
+				{
+					int index = readShort(code, ip);
+					ip += 2;
+					Object value = globals.cellAt(index).value;
+					if(value == Environment.UNDEFINED)
+					{
+						throw error(frame, ip, "Undefined variable '" +
+							globals.nameAt(index) + "'.");
+					}
+					stack[sp++] = value;
+					break;
+				}
+				case OP_DEFINE_GLOBAL:
+					globals.cellAt(readShort(code, ip)).value = stack[--sp];
+					stack[sp] = null;
+					ip += 2;
+					break;
+				case OP_SET_GLOBAL:
+				{
+					int index = readShort(code, ip);
+					ip += 2;
+					Cell cell = globals.cellAt(index);
+					if(cell.value == Environment.UNDEFINED)
+					{
+						throw error(frame, ip, "Undefined variable '" +
+							globals.nameAt(index) + "'.");
+					}
+					cell.value = stack[sp - 1];
+					break;
+				}
+				case OP_GET_UPVALUE:
+				{
+					Upvalue upvalue = upvalues[readShort(code, ip)];
+					ip += 2;
+					stack[sp++] = upvalue.location >= 0 ?
+						stack[upvalue.location] : upvalue.closed;
+					break;
+				}
+				case OP_SET_UPVALUE:
+				{
+					Upvalue upvalue = upvalues[readShort(code, ip)];
+					ip += 2;
+					if(upvalue.location >= 0)
+						stack[upvalue.location] = stack[sp - 1];
+					else
+						upvalue.closed = stack[sp - 1];
+					break;
+				}
+
+				case OP_GET_PROPERTY:
+				{
+					Symbol name = (Symbol) constants[readShort(code, ip)];
+					ip += 2;
+					if(!(stack[sp - 1] instanceof Instance))
+					{
+						throw error(frame, ip, "Only instances have properties.");
+					}
+					Instance instance = (Instance) stack[sp - 1];
+					int slot = instance.shape.slotOf(name);
+					Object value;
+					if(slot != -1)
+					{
+						value = instance.values[slot];
+					}
+					else
+					{
+						Closure method = instance.klass.methods.get(name);
+						if(method == null)
+						{
+							throw error(frame, ip, "Undefined property '" + name + "'.");
+						}
+						value = new BoundMethod(instance, method);
+					}
+					stack[sp - 1] = value;
+					break;
+				}
+				case OP_SET_PROPERTY:
+				{
+					Symbol name = (Symbol) constants[readShort(code, ip)];
+					ip += 2;
+					Object value = stack[--sp];
+					stack[sp] = null;
+					((Instance) stack[sp - 1]).set(name, value);
+					stack[sp - 1] = value;
+					break;
+				}
+				case OP_CHECK_FIELDS:
+					if(!(stack[sp - 1] instanceof Instance))
+					{
+						throw error(frame, ip, "Only instances have fields.");
+					}
+					break;
+				case OP_GET_METHOD:
+				{
+					Symbol name = (Symbol) constants[readShort(code, ip)];
+					ip += 2;
+					if(!(stack[sp - 1] instanceof Instance))
+					{
+						throw error(frame, ip, "Only instances have properties.");
+					}
+					Instance instance = (Instance) stack[sp - 1];
+					int slot = instance.shape.slotOf(name);
+					if(slot != -1)
+					{
+						stack[sp - 1] = instance.values[slot];
+						stack[sp++] = NO_RECEIVER;
+						break;
+					}
+					Closure method = instance.klass.methods.get(name);
+					if(method == null)
+					{
+						throw error(frame, ip, "Undefined property '" + name + "'.");
+					}
+					stack[sp - 1] = method;
+					stack[sp++] = instance;
+					break;
+				}
+				case OP_GET_SUPER:
+				{
+					Symbol name = (Symbol) constants[readShort(code, ip)];
+					ip += 2;
+					Class superclass = (Class) stack[--sp];
+					stack[sp] = null;
+					Closure method = superclass.methods.get(name);
+					if(method == null)
+					{
+						throw error(frame, ip, "Undefined property '" + name + "' .");
+					}
+					stack[sp - 1] = new BoundMethod(stack[sp - 1], method);
+					break;
+				}
+				case OP_SUPER_METHOD:
+				{
+					Symbol name = (Symbol) constants[readShort(code, ip)];
+					ip += 2;
+					Class superclass = (Class) stack[sp - 1];
+					Closure method = superclass.methods.get(name);
+					if(method == null)
+					{
+						throw error(frame, ip, "Undefined property '" + name + "' .");
+					}
+					stack[sp - 1] = stack[sp - 2];
+					stack[sp - 2] = method;
+					break;
+				}
+
+				case OP_EQUAL:
+				{
+					Object b = stack[--sp];
+					stack[sp] = null;
+					stack[sp - 1] = Interpreter.isEqual(stack[sp - 1], b);
+					break;
+				}
+				case OP_NOT_EQUAL:
+				{
+					Object b = stack[--sp];
+					stack[sp] = null;
+					stack[sp - 1] = !Interpreter.isEqual(stack[sp - 1], b);
+					break;
+				}
+				case OP_GREATER:
+				{
+					Object b = stack[--sp];
+					Object a = stack[sp - 1];
+					checkNumberOperands(frame, ip, a, b);
+					stack[sp - 1] = Numbers.greater(a, b);
+					break;
+				}
+				case OP_GREATER_EQUAL:
+				{
+					Object b = stack[--sp];
+					Object a = stack[sp - 1];
+					checkNumberOperands(frame, ip, a, b);
+					stack[sp - 1] = Numbers.greaterEqual(a, b);
+					break;
+				}
+				case OP_LESS:
+				{
+					Object b = stack[--sp];
+					Object a = stack[sp - 1];
+					checkNumberOperands(frame, ip, a, b);
+					stack[sp - 1] = Numbers.less(a, b);
+					break;
+				}
+				case OP_LESS_EQUAL:
+				{
+					Object b = stack[--sp];
+					Object a = stack[sp - 1];
+					checkNumberOperands(frame, ip, a, b);
+					stack[sp - 1] = Numbers.lessEqual(a, b);
+					break;
+				}
+				case OP_ADD:
+				{
+					Object b = stack[--sp];
+					Object a = stack[sp - 1];
+					stack[sp] = null;
+					//Same rules as the tree-walker, including how numbers end up in strings.
+					if(Numbers.isNumber(a) && Numbers.isNumber(b))
+					{
+						stack[sp - 1] = Numbers.add(a, b);
+					}
+					else if(Numbers.isNumber(a) && b instanceof String)
+					{
+						stack[sp - 1] = (String) b + Numbers.toString(a);
+					}
+					else if(a instanceof String && Numbers.isNumber(b))
+					{
+						stack[sp - 1] = Numbers.toString(b) + (String) a;
+					}
+					else if(a instanceof String && b instanceof String)
+					{
+						stack[sp - 1] = (String) a + (String) b;
+					}
+					else
+					{
+						throw error(frame, ip,
+							"Operands must be two numbers or two strings");
+					}
+					break;
+				}
+				case OP_SUBTRACT:
+				{
+					Object b = stack[--sp];
+					Object a = stack[sp - 1];
+					checkNumberOperands(frame, ip, a, b);
+					stack[sp - 1] = Numbers.subtract(a, b);
+					break;
+				}
+				case OP_MULTIPLY:
+				{
+					Object b = stack[--sp];
+					Object a = stack[sp - 1];
+					checkNumberOperands(frame, ip, a, b);
+					stack[sp - 1] = Numbers.multiply(a, b);
+					break;
+				}
+				case OP_DIVIDE:
+				{
+					Object b = stack[--sp];
+					Object a = stack[sp - 1];
+					checkNumberOperands(frame, ip, a, b);
+					stack[sp - 1] = Numbers.divide(a, b);
+					break;
+				}
+				case OP_NOT:
+					stack[sp - 1] = !Interpreter.isTruthy(stack[sp - 1]);
+					break;
+				case OP_NEGATE:
+					if(!Numbers.isNumber(stack[sp - 1]))
+					{
+						throw error(frame, ip, "Operand must be a number.");
+					}
+					stack[sp - 1] = Numbers.negate(stack[sp - 1]);
+					break;
+
+				case OP_PRINT:
+					System.out.println(Interpreter.stringify(stack[--sp]));
+					stack[sp] = null;
+					break;
+				case OP_JUMP:
+					ip += readShort(code, ip) + 2;
+					break;
+				case OP_JUMP_IF_FALSE:
+					if(Interpreter.isTruthy(stack[sp - 1]))
+						ip += 2;
+					else
+						ip += readShort(code, ip) + 2;
+					break;
+				case OP_LOOP:
+					ip -= readShort(code, ip) - 2;
+					break;
+
+				case OP_CALL:
+				case OP_CALL_METHOD:
+				case OP_TAIL_CALL:
+				case OP_TAIL_CALL_METHOD:
+				{
+					int argCount = readShort(code, ip);
+					ip += 2;
+					boolean method = instruction == OP_CALL_METHOD || instruction == OP_TAIL_CALL_METHOD;
+					if(instruction == OP_TAIL_CALL || instruction == OP_TAIL_CALL_METHOD)
+					{
+						int slot = sp - argCount - 1;
+						//What the frame will run, and what goes in its slot 0.
+						Object callee;
+						Object receiver;
+						if(method && stack[slot] != NO_RECEIVER)
+						{
+							callee = stack[slot - 1];
+							receiver = stack[slot];
+						}
+						else
+						{
+							callee = method ? stack[slot - 1] : stack[slot];
+							receiver = callee;
+							if(callee instanceof BoundMethod)
+							{
+								receiver = ((BoundMethod) callee).receiver;
+								callee = ((BoundMethod) callee).method;
+							}
+						}
+
+						if(callee instanceof Closure)
+						{
+							Closure closure = (Closure) callee;
+							Function function = closure.function;
+							if(argCount != function.arity)
+							{
+								throw error(frame, ip, "Expected " + function.arity + " arguments but got " +
+									argCount + ".");
+							}
+
+							//The callee takes over the frame: its receiver and arguments go where the caller's slots were.
+							closeUpvalues(base);
+							stack[base] = receiver;
+							System.arraycopy(stack, sp - argCount, stack, base + 1, argCount);
+							Arrays.fill(stack, base + 1 + argCount, sp, null);
+							sp = base + 1 + argCount;
+							if(base + function.maxStack > stack.length)
+							{
+								this.stack = Arrays.copyOf(stack, Math.max(stack.length * 2, base + function.maxStack));
+								stack = this.stack;
+							}
+
+							frame.closure = closure;
+							code = function.chunk.code;
+							constants = function.constants;
+							upvalues = closure.upvalues;
+							ip = 0;
+							break;
+						}
+						//Anything else is called the usual way, and the OP_RETURN after this returns the result.
+					}
+
+					frame.ip = ip;
+					this.sp = sp;
+					if(!method)
+					{
+						callValue(stack[sp - argCount - 1], argCount);
+					}
+					else
+					{
+						callMethod(argCount);
+					}
+
+					frame = frames[frameCount - 1];
+					stack = this.stack;
+					code = frame.closure.function.chunk.code;
+					constants = frame.closure.function.constants;
+					upvalues = frame.closure.upvalues;
+					base = frame.base;
+					ip = frame.ip;
+					sp = this.sp;
+					break;
+				}
+				case OP_CLOSURE:
+				{
+					Function function = (Function) constants[readShort(code, ip)];
+					ip += 2;
+					Closure closure = new Closure(function);
+					for(int i = 0; i < closure.upvalues.length; i++)
+					{
+						boolean isLocal = code[ip++] == 1;
+						int index = readShort(code, ip);
+						ip += 2;
+						if(isLocal)
+							closure.upvalues[i] = captureUpvalue(base + index);
+						else
+							closure.upvalues[i] = upvalues[index];
+					}
+					stack[sp++] = closure;
+					break;
+				}
+				case OP_CLOSE_UPVALUE:
+					closeUpvalues(sp - 1);
+					stack[--sp] = null;
+					break;
+				case OP_RETURN:
+				{
+					Object result = stack[--sp];
+					closeUpvalues(base);
+					frameCount--;
+					if(frameCount == 0)
+					{
+						Arrays.fill(stack, 0, sp + 1, null);
+						this.sp = 0;
+						return;
+					}
+
+					//Drop the frame's slots so they don't keep garbage alive.
+					Arrays.fill(stack, frame.result, sp + 1, null);
+					sp = frame.result;
+					stack[sp++] = result;
+
+					frame = frames[frameCount - 1];
+					code = frame.closure.function.chunk.code;
+					constants = frame.closure.function.constants;
+					upvalues = frame.closure.upvalues;
+					base = frame.base;
+					ip = frame.ip;
+					break;
+				}
+				case OP_CLASS:
+					stack[sp++] = new Class((String) constants[readShort(code, ip)]);
+					ip += 2;
+					break;
+				case OP_INHERIT:
+				{
+					if(!(stack[sp - 2] instanceof Class))
+					{
+						throw error(frame, ip, "Superclass must be a class.");
+					}
+					Class superclass = (Class) stack[sp - 2];
+					((Class) stack[sp - 1]).methods.putAll(superclass.methods);
+					break;
+				}
+				case OP_METHOD:
+				{
+					Symbol name = (Symbol) constants[readShort(code, ip)];
+					ip += 2;
+					Closure method = (Closure) stack[--sp];
+					stack[sp] = null;
+					Class klass = (Class) stack[sp - 1];
+					klass.methods.put(name, method);
+					if(name == Symbol.INIT)
+					{
+						klass.initializer = method;
+					}
+					break;
+				}
+			}
+		}
+	}
+
+	private static int readShort(byte[] code, int offset)
+	{
+		return ((code[offset] & 0xff) << 8) | (code[offset + 1] & 0xff);
+	}
+
+	/***
+	 * Calls whatever is sitting argCount slots below the top of the stack.
+	 * Milk functions get a new frame, everything else is done by the time this returns.
+	 */
+	private void callValue(Object callee, int argCount)
+	{
+		int slot = sp - argCount - 1;
+
+		if(callee instanceof Closure)
+		{
+			callClosure((Closure) callee, argCount, slot);
+			return;
+		}
+
+		if(callee instanceof BoundMethod)
+		{
+			BoundMethod bound = (BoundMethod) callee;
+			stack[slot] = bound.receiver;
+			callClosure(bound.method, argCount, slot);
+			return;
+		}
+
+		if(callee instanceof Class)
+		{
+			Class klass = (Class) callee;
+			int arity = klass.initializer == null ? 0 : klass.initializer.function.arity;
+			if(argCount != arity)
+			{
+				throw error("Expected " + arity + " arguments but got " +
+					argCount + ".");
+			}
+
+			stack[slot] = new Instance(klass);
+			if(klass.initializer != null)
+			{
+				callClosure(klass.initializer, argCount, slot);
+			}
+			else
+			{
+				sp = slot + 1;
+			}
+			return;
+		}
+
+		if(callee instanceof MilkCallable)
+		{
+			MilkCallable function = (MilkCallable) callee;
+			if(argCount != function.arity())
+			{
+				throw error("Expected " + function.arity() +
+					" arguments but got " + argCount + ".");
+			}
+
+			Object[] arguments = Arrays.copyOfRange(stack, slot + 1, sp);
+			Object result = function.call(null, arguments);
+			Arrays.fill(stack, slot, sp, null);
+			sp = slot;
+			stack[sp++] = result;
+			return;
+		}
+
+		throw error("Can only call functions and classes.");
+	}
+
+	/***
+	 * Calls what OP_GET_METHOD or OP_SUPER_METHOD left on the stack.
+	 * Methods run with the receiver as slot 0, a field holding a function is called like any value.
+	 */
+	private void callMethod(int argCount)
+	{
+		int receiver = sp - argCount - 1;
+		if(stack[receiver] == NO_RECEIVER)
+		{
+			System.arraycopy(stack, receiver + 1, stack, receiver, argCount);
+			stack[--sp] = null;
+			callValue(stack[receiver - 1], argCount);
+			return;
+		}
+
+		Closure method = (Closure) stack[receiver - 1];
+		callClosure(method, argCount, receiver);
+		frames[frameCount - 1].result = receiver - 1;
+	}
+
+	/***
+	 * Pushes a new frame for closure. Its slot 0 is the stack slot base.
+	 */
+	private void callClosure(Closure closure, int argCount, int base)
+	{
+		Function function = closure.function;
+		if(argCount != function.arity)
+		{
+			throw error("Expected " + function.arity + " arguments but got " +
+				argCount + ".");
+		}
+
+		//The script's own frame isn't a call, so it doesn't count.
+		if(frameCount > Milk.maxDepth)
+		{
+			throw error("Stack overflow.");
+		}
+		if(frameCount == frames.length)
+		{
+			frames = Arrays.copyOf(frames, frameCount * 2);
+		}
+		if(base + function.maxStack > stack.length)
+		{
+			stack = Arrays.copyOf(stack,
+				Math.max(stack.length * 2, base + function.maxStack));
+		}
+
+		CallFrame frame = frames[frameCount];
+		if(frame == null)
+		{
+			frame = new CallFrame();
+			frames[frameCount] = frame;
+		}
+		frame.closure = closure;
+		frame.ip = 0;
+		frame.base = base;
+		frame.result = base;
+		frameCount++;
+	}
+
+	/***
+	 * Finds or creates the open upvalue for a stack slot, so closures capturing the same variable share it.
+	 */
+	private Upvalue captureUpvalue(int location)
+	{
+		Upvalue previous = null;
+		Upvalue upvalue = openUpvalues;
+		while(upvalue != null && upvalue.location > location)
+		{
+			previous = upvalue;
+			upvalue = upvalue.next;
+		}
+
+		if(upvalue != null && upvalue.location == location)
+			return upvalue;
+
+		Upvalue created = new Upvalue(location, upvalue);
+		if(previous == null)
+			openUpvalues = created;
+		else
+			previous.next = created;
+		return created;
+	}
+
+	/***
+	 * Closes every open upvalue at or above the stack slot last: the value moves into the upvalue itself.
+	 */
+	private void closeUpvalues(int last)
+	{
+		while(openUpvalues != null && openUpvalues.location >= last)
+		{
+			Upvalue upvalue = openUpvalues;
+			upvalue.closed = stack[upvalue.location];
+			upvalue.location = -1;
+			openUpvalues = upvalue.next;
+		}
+	}
+
+	private void checkNumberOperands(CallFrame frame, int ip, Object a, Object b)
+	{
+		if(Numbers.isNumber(a) && Numbers.isNumber(b))
+			return;
+		throw error(frame, ip, "Operands must be numbers");
+	}
+
+	/***
+	 * A runtime error at the instruction that was just read in frame.
+	 */
+	private RuntimeError error(CallFrame frame, int ip, String message)
+	{
+		frame.ip = ip;
+		return error(message);
+	}
+
+	/***
+	 * A runtime error at the current instruction of the innermost frame.
+	 */
+	private RuntimeError error(String message)
+	{
+		CallFrame frame = frames[frameCount - 1];
+		return new RuntimeError(frame.closure.function.chunk.lines[frame.ip - 1], message);
+	}
+}
@@ -0,0 +1,222 @@
+package JavaInterpreter.Milk;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+/***
+ * Edits a script through IncrementalParser and checks that after every edit it has the same trees, frame size and
+ * errors as parsing the edited source from scratch. When there's no error, the trees also have to be the same as
+ * Parser and Resolver make for the whole thing at once.
+ * Trees are compared by dumping every field of every node, tokens with their lines.
+ */
+public class IncrementalParserTest
+{
+	private static final String SOURCE =
+		"var a = 1;\n" +
+		"print a + 2;\n" +
+		"ming add(x, y)\n" +
+		"{\n" +
+		"  var sum = x + y;\n" +
+		"  return sum;\n" +
+		"}\n" +
+		"class Doughnut {\n" +
+		"  cook() {\n" +
+		"    print \"Fry until\n golden brown.\";\n" +
+		"  }\n" +
+		"}\n" +
+		"class BostonCream < Doughnut {\n" +
+		"  init(filling) { this.filling = filling; }\n" +
+		"  cook() { super.cook(); print this.filling; }\n" +
+		"}\n" +
+		"// A comment between declarations.\n" +
+		"if(a > 0)\n" +
+		"  print \"positive\";\n" +
+		"else\n" +
+		"  print \"not\";\n" +
+		"{\n" +
+		"  var inner = add(a, 3);\n" +
+		"  for(var i = 0; i < inner; i = i + 1) print i;\n" +
+		"}\n" +
+		"while(a < 10) a = a + 1;\n" +
+		"BostonCream(\"custard\").cook();\n";
+
+	//Bits of code the random edits put in, some of them break it.
+	private static final String[] INSERTS = {
+		"\n", " ", ";", "var x = 1;", "}", "{", "print a;", "\"", "//", "ming f(a){return a;}\n", "else", "if(true)",
+		"x", "\n\n", "class A < B { init(){ super.m(); } }\n", "(", ")", "=", "print 1;\n", "{ var z = 3; print z; }\n", ""
+	};
+
+	//Node fields running the code fills in, they're left out of the dumps.
+	private static final List<String> RUNTIME = Arrays.asList("cache", "global", "calls", "compiled", "uncompilable", "pool", "pooled");
+
+	public static void main(String[] args)
+	{
+		List<String> errors = new ArrayList<>();
+		Milk.errors.set(errors);
+
+		IncrementalParser parser = new IncrementalParser(SOURCE);
+		check(parser, "the start");
+		checkWhole(parser, "the start");
+
+		//Edits that go between, into, across and onto the ends of declarations.
+		edit(parser, 0, 0, "print 0;\n");
+		edit(parser, SOURCE.indexOf("var sum") + 9, 0, "\n\n");
+		int brace = parser.source().indexOf("}\nclass Doughnut");
+		edit(parser, brace, 1, "");
+		edit(parser, brace, 0, "}");
+		edit(parser, parser.source().indexOf("else"), 4, "");
+		edit(parser, parser.source().indexOf("  print \"not\""), 0, "else\n");
+		edit(parser, parser.source().length(), 0, "print add(1, 2);");
+		checkWhole(parser, "the fixed edits");
+
+		syntaxError(parser);
+		randomEdits(parser, 2000, 42);
+
+		Milk.errors.set(null);
+		System.out.println("IncrementalParserTest OK");
+	}
+
+	/***
+	 * Breaks a declaration, moves it down with an edit before it, then fixes it.
+	 */
+	private static void syntaxError(IncrementalParser parser)
+	{
+		int offset = parser.source().indexOf("print a + 2;");
+		int line = line(parser.source(), offset);
+		edit(parser, offset, "print a + 2;".length(), "print a + ;");
+		check(parser.hadError(), "print a + ; should be an error");
+		check(parser.errors().size() == 1 && parser.errors().get(0).startsWith("[line " + line + "]"),
+			"the error should be on line " + line + ", got " + parser.errors());
+
+		edit(parser, 0, 0, "\n\n");
+		check(parser.errors().size() == 1 && parser.errors().get(0).startsWith("[line " + (line + 2) + "]"),
+			"the error should have moved to line " + (line + 2) + ", got " + parser.errors());
+
+		offset = parser.source().indexOf("print a + ;");
+		edit(parser, offset, "print a + ;".length(), "print a + 2;");
+		check(!parser.hadError(), "fixing it should leave no errors, got " + parser.errors());
+		checkWhole(parser, "fixing the error");
+	}
+
+	private static void randomEdits(IncrementalParser parser, int rounds, long seed)
+	{
+		Random random = new Random(seed);
+		for(int i = 0; i < rounds; i++)
+		{
+			String source = parser.source();
+			int offset = random.nextInt(source.length() + 1);
+			int removed = Math.min(random.nextInt(random.nextInt(10) == 0 ? 200 : 6), source.length() - offset);
+			edit(parser, offset, removed, INSERTS[random.nextInt(INSERTS.length)]);
+			if(!parser.hadError())
+				checkWhole(parser, "round " + i);
+		}
+	}
+
+	private static void edit(IncrementalParser parser, int offset, int removed, String inserted)
+	{
+		parser.edit(offset, removed, inserted);
+		check(parser, "edit(" + offset + ", " + removed + ", \"" + inserted.replace("\n", "\\n") + "\")");
+	}
+
+	//Same as parsing the source from scratch.
+	private static void check(IncrementalParser parser, String when)
+	{
+		IncrementalParser fresh = new IncrementalParser(parser.source());
+		check(dump(parser.statements()).equals(dump(fresh.statements())), "different trees after " + when);
+		check(parser.frameSize() == fresh.frameSize(), "different frame size after " + when);
+		check(parser.errors().equals(fresh.errors()), "different errors after " + when + ": " +
+			parser.errors() + " instead of " + fresh.errors());
+	}
+
+	//Same as parsing and resolving it all at once.
+	private static void checkWhole(IncrementalParser parser, String when)
+	{
+		List<String> errors = Milk.errors.get();
+		errors.clear();
+		List<Stmt> statements = new Parser(new Scanner(parser.source())).parse();
+		Resolver resolver = new Resolver();
+		if(errors.isEmpty())
+			resolver.resolve(statements);
+		check(errors.equals(parser.errors()), "different errors than the whole thing after " + when + ": " +
+			parser.errors() + " instead of " + errors);
+		check(dump(statements).equals(dump(parser.statements())), "different trees than the whole thing after " + when);
+		check(resolver.frameSize() == parser.frameSize(), "different frame size than the whole thing after " + when);
+		errors.clear();
+	}
+
+	private static int line(String source, int offset)
+	{
+		int line = 1;
+		for(int i = 0; i < offset; i++)
+		{
+			if(source.charAt(i) == '\n')
+				line++;
+		}
+		return line;
+	}
+
+	private static String dump(List<Stmt> statements)
+	{
+		StringBuilder text = new StringBuilder();
+		for(Stmt statement : statements)
+		{
+			dump(statement, text);
+			text.append('\n');
+		}
+		return text.toString();
+	}
+
+	private static void dump(Object value, StringBuilder text)
+	{
+		if(value instanceof Token)
+		{
+			Token token = (Token) value;
+			text.append(token.type).append(':').append(token.lexeme).append('@').append(token.line);
+		}
+		else if(value instanceof List)
+		{
+			text.append('[');
+			for(Object element : (List<?>) value)
+			{
+				dump(element, text);
+				text.append(',');
+			}
+			text.append(']');
+		}
+		else if(value instanceof Expr || value instanceof Stmt)
+		{
+			text.append(value.getClass().getSimpleName()).append('{');
+			for(Field field : value.getClass().getDeclaredFields())
+			{
+				if(Modifier.isStatic(field.getModifiers()) || RUNTIME.contains(field.getName()))
+					continue;
+				field.setAccessible(true);
+				text.append(field.getName()).append('=');
+				try{
+					dump(field.get(value), text);
+				} catch(IllegalAccessException e) {
+					throw new AssertionError(e);
+				}
+				text.append(';');
+			}
+			text.append('}');
+		}
+		else if(value instanceof int[])
+		{
+			text.append(Arrays.toString((int[]) value));
+		}
+		else
+		{
+			text.append(value);
+		}
+	}
+
+	private static void check(boolean condition, String message)
+	{
+		if(!condition)
+			throw new AssertionError(message);
+	}
+}
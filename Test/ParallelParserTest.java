@@ -0,0 +1,73 @@
+package JavaInterpreter.Milk;
+
+import java.util.ArrayList;
+import java.util.List;
+/***
+ * Checks that ParallelParser reports the same errors as Parser on sources big enough to be cut into chunks, with syntax
+ * errors in them that the chunks would recover from differently.
+ */
+public class ParallelParserTest
+{
+	public static void main(String[] args) throws InterruptedException
+	{
+		List<String> errors = new ArrayList<>();
+		Milk.errors.set(errors);
+
+		//A statement missing its ; in a class that ends right where the first chunk gets cut.
+		StringBuilder source = lines(65520);
+		source.append("class A { m() { print 1 } }\n");
+		source.append("ming g() { return 1; }\n");
+		source.append("print g();\n");
+		same(source.toString(), "a missing ;");
+
+		//Errors in every chunk.
+		source = new StringBuilder();
+		for(int i = 0; i < 2000; i++)
+		{
+			source.append(lines(100));
+			source.append(i % 2 == 0 ? "print (1;\n" : "ming f() { return 1 }\n");
+		}
+		same(source.toString(), "errors all through it");
+
+		//No errors, the chunks are used.
+		source = lines(300000);
+		String clean = source.toString();
+		List<Stmt> statements = ParallelParser.parse(clean);
+		check(errors.isEmpty(), "no errors expected, got " + errors);
+		check(statements.size() == new Parser(new Scanner(clean)).parse().size(), "different number of statements");
+
+		Milk.errors.set(null);
+		System.out.println("ParallelParserTest OK");
+	}
+
+	//At least length characters of print 1; lines.
+	private static StringBuilder lines(int length)
+	{
+		StringBuilder source = new StringBuilder();
+		while(source.length() < length)
+		{
+			source.append("print 1;\n");
+		}
+		return source;
+	}
+
+	private static void same(String source, String what) throws InterruptedException
+	{
+		List<String> errors = Milk.errors.get();
+		errors.clear();
+		ParallelParser.parse(source);
+		List<String> parallel = new ArrayList<>(errors);
+
+		errors.clear();
+		new Parser(new Scanner(source)).parse();
+		check(!errors.isEmpty(), what + " should be an error");
+		check(parallel.equals(errors), "different errors with " + what + ": " + parallel + " instead of " + errors);
+		errors.clear();
+	}
+
+	private static void check(boolean condition, String message)
+	{
+		if(!condition)
+			throw new AssertionError(message);
+	}
+}
@@ -0,0 +1,85 @@
+package JavaInterpreter.Milk;
+
+import java.util.HashMap;
+
+/***
+ * Checks that instances with lots of fields keep working, and don't take time or memory that grows with the square of
+ * how many fields there are. Run it with a small heap (java -Xmx64m) to be sure.
+ */
+public class ShapeTest
+{
+	private static final int FIELDS = 20000;
+
+	public static void main(String[] args)
+	{
+		sharing();
+		manyFields();
+		manyVMFields();
+		System.out.println("ShapeTest OK");
+	}
+
+	//Instances that get the same fields in the same order share shapes, up to the limit.
+	private static void sharing()
+	{
+		Symbol a = Symbol.of("a");
+		Symbol b = Symbol.of("b");
+		Shape first = Shape.EMPTY.with(a).with(b);
+		check(first == Shape.EMPTY.with(a).with(b), "same fields, same order should share a shape");
+		check(first != Shape.EMPTY.with(b).with(a), "a different order should be a different shape");
+		check(first.slotOf(a) == 0 && first.slotOf(b) == 1, "fields should be in the order they were added");
+
+		Shape shape = Shape.EMPTY;
+		for(int i = 0; i < Shape.LIMIT; i++)
+		{
+			shape = shape.with(Symbol.of("s" + i));
+		}
+		check(!shape.dictionary, "a shape with LIMIT fields is still shared");
+		Shape one = shape.with(Symbol.of("extra"));
+		Shape two = shape.with(Symbol.of("extra"));
+		check(one.dictionary && two.dictionary && one != two, "past LIMIT each instance gets its own shape");
+		check(one.slotOf(Symbol.of("extra")) == Shape.LIMIT, "the field past LIMIT goes in the next slot");
+	}
+
+	private static void manyFields()
+	{
+		MilkInstance instance = new MilkInstance(new MilkClass("Many", null, new HashMap<>()));
+		for(int i = 0; i < FIELDS; i++)
+		{
+			instance.set(name("f" + i), (long) i, new InlineCache());
+		}
+		//Setting fields it has already just changes them.
+		instance.set(name("f0"), "first", new InlineCache());
+
+		check("first".equals(instance.get(name("f0"), new InlineCache())), "f0 should have been set again");
+		for(int i = 1; i < FIELDS; i++)
+		{
+			check(Long.valueOf(i).equals(instance.get(name("f" + i), new InlineCache())), "wrong value in f" + i);
+		}
+	}
+
+	private static void manyVMFields()
+	{
+		VM.Instance instance = new VM.Instance(new VM.Class("Many"));
+		for(int i = 0; i < FIELDS; i++)
+		{
+			instance.set(Symbol.of("f" + i), (long) i);
+		}
+
+		check(instance.shape.size == FIELDS, "the VM instance should have every field");
+		for(int i = 0; i < FIELDS; i++)
+		{
+			check(Long.valueOf(i).equals(instance.values[instance.shape.slotOf(Symbol.of("f" + i))]), "wrong value in f" + i);
+		}
+	}
+
+	private static Token name(String lexeme)
+	{
+		return new Token(TokenType.IDENTIFIER, lexeme, Symbol.of(lexeme), null, 1);
+	}
+
+	private static void check(boolean condition, String message)
+	{
+		if(!condition)
+			throw new AssertionError(message);
+	}
+}
@@ -24,32 +24,46 @@ public class GenerateAst
 		/***
 		 Needs to have description of each type and its fields.	
 		 Expr is the name of the class and the name of the file it outputs.
+		 Fields after a | aren't passed to the constructor, they get filled in later
+		 (by the Resolver, or at run time like a function's call count).
+		 For variables: slot -1 is a global. Otherwise its the slot in the function's frame,
+		 or the index in its upvalues if upvalue is set. captured means a closure shares the variable,
+		 so its slot holds a Cell with the value in it.
 		*/
 		defineAst(outputDir, "Expr", Arrays.asList(          
-	      "Assign   : Token name, Expr value",
+	      "Assign   : Token name, Expr value | int slot = -1, boolean upvalue = false," +
+                  " boolean captured = false, Cell global = null",
         "Binary   : Expr left, Token operator, Expr right",
         "Call     : Expr callee, Token paren, List<Expr> arguments",
-	      "Get      : Expr object, Token name",
+	      "Get      : Expr object, Token name | InlineCache cache = new InlineCache()",
         "Grouping : Expr expression",                      
 	      "Literal  : Object value",                         
 	      "Logical  : Expr left, Token operator, Expr right",
-        "Set      : Expr object, Token name, Expr value",
-        "Super    : Token keyword, Token method",
-        "This     : Token keyword",
+        "Set      : Expr object, Token name, Expr value | InlineCache cache = new InlineCache()",
+        "Super    : Token keyword, Token method | int upvalue = 0, Expr.This receiver = null," +
+                  " InlineCache cache = new InlineCache()",
+        "This     : Token keyword | int slot = 0, boolean upvalue = false, boolean captured = false",
         "Unary    : Token operator, Expr right",
-        "Variable : Token name"            
+        "Variable : Token name | int slot = -1, boolean upvalue = false," +
+                  " boolean captured = false, Cell global = null"            
     	));
 
     defineAst(outputDir, "Stmt", Arrays.asList(
         "Block      : List<Stmt> statements",
         "Class      : Token name, Expr.Variable superclass," +
-                    " List<Stmt.Function> methods",
+                    " List<Stmt.Function> methods | int slot = -1, boolean captured = false," +
+                    " int superSlot = 0",
         "Expression : Expr expression",
-        "Function   : Token name, List<Token> params, List<Stmt> body",
+        "For        : Stmt initializer, Expr condition, Expr increment, Stmt body",
+        "Function   : Token name, List<Token> params, List<Stmt> body" +
+                    " | int slot = -1, boolean captured = false," +
+                    " int frameSize = 0, int[] boxed = null, int[] captures = null," +
+                    " int calls = 0, Jit.Code compiled = null, boolean uncompilable = false," +
+                    " Environment[] pool = null, int pooled = 0",
         "If         : Expr condition, Stmt thenBranch, Stmt elseBranch",
         "Print      : Expr expression",
-        "Return     : Token keyword, Expr value",
-        "Var        : Token name, Expr initializer",
+        "Return     : Token keyword, Expr value | boolean tailCall = false",
+        "Var        : Token name, Expr initializer | int slot = -1, boolean captured = false",
         "While      : Expr condition, Stmt body"
       ));
 	}
@@ -81,8 +95,9 @@ public class GenerateAst
     	for(String type : types)
     	{
     		String className = type.split(":")[0].trim();
-    		String fields = type.split(":")[1].trim();
-    		defineType(writer, baseName, className, fields);
+    		String[] fields = type.split(":")[1].split("\\|");
+    		String resolved = fields.length > 1 ? fields[1].trim() : null;
+    		defineType(writer, baseName, className, fields[0].trim(), resolved);
     	}
     	
     	writer.println();
@@ -112,7 +127,7 @@ public class GenerateAst
     }
     private static void defineType(
     	PrintWriter writer, String baseName,
-    	String className, String fieldList) 
+    	String className, String fieldList, String resolvedList) 
     {
     	writer.println("  static class " + className + " extends " +
     		baseName + " {");
@@ -134,6 +149,15 @@ public class GenerateAst
    		{
    			writer.println("    final " + field + ";");
    		}
+   		//Mutable fields that get filled in later.
+   		if(resolvedList != null)
+   		{
+   			writer.println();
+   			for(String field : resolvedList.split(", "))
+   			{
+   				writer.println("    " + field + ";");
+   			}
+   		}
    		writer.println();
    		writer.println("    <R> R accept(Visitor<R> visitor) {");
    		writer.println("      return visitor.visit" + 